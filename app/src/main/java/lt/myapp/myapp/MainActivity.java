@@ -3,43 +3,69 @@ package lt.myapp.myapp;
 import android.content.Intent;
 import android.os.Bundle;
 
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.Task;
-
 import android.util.Log;
 import android.view.View;
 
 import com.google.android.material.navigation.NavigationView;
 
-import androidx.annotation.NonNull;
 import androidx.core.view.GravityCompat;
 import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import lt.myapp.myapp.Payment.PaymentCompletion;
+import lt.myapp.myapp.Payment.PaymentCompletions;
+import lt.myapp.myapp.Payment.PaymentMethodData;
 import lt.myapp.myapp.Payment.PaymentsUtil;
+import lt.myapp.myapp.Payment.ReadyToPayCache;
+import lt.myapp.myapp.sys.TimeToolsExtra.HostResolver;
+import lt.myapp.myapp.sys.TimeToolsExtra.NetworkClock;
+import lt.myapp.myapp.sys.TimeToolsExtra.NtpSampleStore;
 import lt.myapp.myapp.sys.TimeToolsExtra.SNTPClient;
+import lt.myapp.myapp.sys.TimeToolsExtra.SntpMetrics;
+import lt.myapp.myapp.sys.TimeToolsExtra.TimeSyncScheduler;
+import lt.myapp.myapp.sys.Watchdog.MainThreadGuard;
+import lt.myapp.myapp.sys.Watchdog.MainThreadWatchdog;
 
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.TextView;
+import android.widget.Toast;
 
-import org.json.JSONObject;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
 public class MainActivity extends AppCompatActivity
         implements NavigationView.OnNavigationItemSelectedListener {
 
+    private static final String TAG = "MainActivity";
+
     private View mGooglePayButton;
     private View mGooglePayANRButton;
     private int customRequestCode = PaymentsUtil.LOAD_PAYMENT_DATA_REQUEST_CODE; //by default it's default
     private int customRequestCodeANR = 900; //by default it's default
     private boolean googleInitialized = false;//have we initialized already?
-    private JSONObject mPaymentMethodData = null;//our payment data
     private PaymentsUtil pu = null;
     private static long GOOGLE_PAY_PRICE = 1000000;
     private TextView mGooglePayStatusText = null;
 
-    private boolean gotTime = false;//did we get time from server yet
+    private final CompositeDisposable payments = new CompositeDisposable();//payment sheets being started, dropped with the activity
+    // approved payments outlive the activity in PaymentCompletions, only their delivery to this instance ends with it
+    private final PaymentsUtil.PUListener paymentListener = new PaymentsUtil.PUListener() {
+        @Override
+        public void onSuccess(PaymentCompletion paymentCompletion) {
+            System.out.println("Testing: onSuccess");
+            processPayment(paymentCompletion);
+        }
+    };
+    private Disposable readyToPay;//isReadyToPay answers, dropped with the activity
+    private static final String NTP_SAMPLE_FILE = "ntp_sample.bin";
+    private static final String READY_TO_PAY_FILE = "ready_to_pay.bin";
+    private static final String STALL_REPORT_DIR = "stalls";
 
 
     @Override
@@ -49,11 +75,17 @@ public class MainActivity extends AppCompatActivity
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
+        MainThreadGuard.setStrict(BuildConfig.DEBUG);//blocking calls on the main thread crash debug builds, release only logs samples
+        MainThreadWatchdog.install(new File(getFilesDir(), STALL_REPORT_DIR));//main thread stalls get a report with stacks, before they become ANRs
+        HostResolver.getInstance().prewarm(SNTPClient.DEFAULT_SERVERS);//dns of the time servers before anybody needs it
+        NetworkClock.getInstance().setStore(new NtpSampleStore(new File(getFilesDir(), NTP_SAMPLE_FILE)));//last known time first, then a sync if it's stale
+        TimeSyncScheduler.getInstance().start();//keeps a drift corrected clock so payments don't wait on the network
 
         mGooglePayStatusText = findViewById(R.id.google_unavailable_text);
         mGooglePayButton = findViewById(R.id.google_pay_button);
         mGooglePayANRButton = findViewById(R.id.google_pay_anr_button);
         initGooglePayButton();
+        PaymentCompletions.getInstance().attach(paymentListener);//payments approved while the previous instance was going away come now
 
 
         DrawerLayout drawer = (DrawerLayout) findViewById(R.id.drawer_layout);
@@ -69,28 +101,18 @@ public class MainActivity extends AppCompatActivity
     private void initGooglePayButton() {
         if (!googleInitialized) {
             googleInitialized = true;
-            mGooglePayButton.setOnClickListener(gPay -> {
-                mPaymentMethodData = null;//we clean whatever we had
-                pu.requestPayment(gPay, this, GOOGLE_PAY_PRICE, customRequestCode);
-            });//performs pay operation
-            mGooglePayANRButton.setOnClickListener(gPay -> {
-                mPaymentMethodData = null;//we clean whatever we had
-                pu.requestPayment(gPay, this, GOOGLE_PAY_PRICE, customRequestCodeANR);
-            });//performs pay operation
+            mGooglePayButton.setOnClickListener(gPay ->
+                    payments.add(pu.requestPayment(gPay, this, GOOGLE_PAY_PRICE, customRequestCode)));//performs pay operation
+            mGooglePayANRButton.setOnClickListener(gPay ->
+                    payments.add(pu.requestPayment(gPay, this, GOOGLE_PAY_PRICE, customRequestCodeANR)));//performs pay operation
 
             pu = new PaymentsUtil(this);
-            pu.possiblyShowGooglePayButton(new OnCompleteListener<Boolean>() {
-                @Override
-                public void onComplete(@NonNull Task<Boolean> task) {
-                    if (task.isSuccessful()) {
-                        setGooglePayAvailable(task.getResult());
-                    } else {
-                        setGooglePayAvailable(false);
-                        //System.out.println("isReadyToPay failed: " + task.getException());
-                        Log.w("isReadyToPay failed", task.getException());
-                    }
-                }
-            });
+            pu.prepareRequest(GOOGLE_PAY_PRICE);//the click then only has to open the payment sheet
+            // last start's answer from the disk right away, the button only changes again if isReadyToPay disagrees
+            readyToPay = pu.isReadyToPay(new ReadyToPayCache(new File(getFilesDir(), READY_TO_PAY_FILE),
+                    ReadyToPayCache.DEFAULT_TTL, Schedulers.io()))
+                    .subscribe(this::setGooglePayAvailable,
+                            throwable -> Log.w(TAG, "isReadyToPay failed", throwable));
         }
     }
 
@@ -99,42 +121,9 @@ public class MainActivity extends AppCompatActivity
         System.out.println("Testing: onActivityResult");
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == customRequestCode || requestCode == customRequestCodeANR) {//PaymentsUtil.LOAD_PAYMENT_DATA_REQUEST_CODE
-            pu.onActivityResult(requestCode, resultCode, data, mGooglePayButton,
-                    new SNTPClient.Listener() {
-                        @Override
-                        public void onTimeReceived(long requestTime, long serverTime, long offset) {
-                            try {
-                                System.out.println("Testing: onTimeReceived");
-                                //todo: uncommenting this toast solves ANR, now wtf is that all about?
-                                //Toast.makeText(mGooglePayButton.getContext(), "onTimeReceived done", Toast.LENGTH_LONG).show();//to make same environment as in PaymentsUtil
-                                gotTime = true;//our synchronisation thingy
-                                processPayment(mPaymentMethodData);
-                            }catch (Exception e){
-                                Log.e(SNTPClient.TAG, e.getMessage());
-                            }
-                            //Log.e(SNTPClient.TAG, rawDate);
-                        }
-
-                        @Override
-                        public void onError(long requestTime, Exception ex) {
-                            System.out.println("Testing: onError");
-                            gotTime = true;//our synchronisation thingy
-                            processPayment(mPaymentMethodData);
-                            Log.e(SNTPClient.TAG, ex.getMessage());
-                        }
-                    },
-
-                    /**
-                     * If payment succeeds, we get this listener called out
-                     */
-                    new PaymentsUtil.PUListener() {
-                        @Override
-                        public void onSuccess(JSONObject paymentMethodData) {
-                            System.out.println("Testing: onSuccess");
-                            mPaymentMethodData = paymentMethodData;//used when we finish receiving ntp date!
-                            processPayment(paymentMethodData);
-                        }
-                    });
+            // token and time come together, once, on the main thread: no flags, no second processPayment.
+            // A rotation meanwhile doesn't lose it, the next instance's paymentListener gets it
+            pu.onActivityResult(requestCode, resultCode, data, mGooglePayButton, PaymentCompletions.getInstance());
 
         }
     }
@@ -151,18 +140,38 @@ public class MainActivity extends AppCompatActivity
 
     }
 
-    private void processPayment(JSONObject paymentMethodData){
-        System.out.println("Testing: processPayment. paymentMethodData="+paymentMethodData+", gotTime="+gotTime);
-        if (paymentMethodData != null && gotTime) {
-            try {
-                pu.handleTestPayment(paymentMethodData, this);//just for testing purpose with
-            } catch (Exception e) {
-                System.out.println("Testing e:" + e.getMessage());
-            }
+    private void processPayment(PaymentCompletion completion) {
+        System.out.println("Testing: processPayment. " + completion);
+        PaymentMethodData paymentMethodData = completion.getPaymentMethodData();
+        if (paymentMethodData.getBillingName() != null) {
+            Toast.makeText(this, paymentMethodData.getBillingName(), Toast.LENGTH_LONG).show();
         }
+        pu.handleTestPayment(paymentMethodData, this);//just for testing purpose with
     }
 
+    @Override
+    protected void onDestroy() {
+        PaymentCompletions.getInstance().detach(paymentListener);
+        payments.clear();
+        if (readyToPay != null) {
+            readyToPay.dispose();
+        }
+        super.onDestroy();
+    }
 
+    /**
+     * adb shell dumpsys activity lt.myapp.myapp/.MainActivity prints the time request metrics and stall counts too
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        SntpMetrics.dump(prefix, writer);
+        MainThreadGuard.dump(prefix, writer);
+        MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+        if (watchdog != null) {
+            watchdog.dump(prefix, writer);
+        }
+    }
 
     @Override
     public void onBackPressed() {
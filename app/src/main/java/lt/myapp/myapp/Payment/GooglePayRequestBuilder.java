@@ -0,0 +1,202 @@
+package lt.myapp.myapp.Payment;
+
+/**
+ * Typed builder of the Google Pay request documents, streamed by a {@link JsonStreamWriter} into a reusable buffer.
+ * <p>
+ * Writes the same documents as {@link PaymentRequests#getIsReadyToPayRequest()} and
+ * {@link PaymentRequests#getPaymentDataRequest(String, PaymentConfig)}, fields in the same order, without building
+ * the org.json tree first. The builder only keeps references to the values, it can be refilled and written again.
+ * Not thread safe, reuse one per thread.
+ * <pre>
+ * String json = new GooglePayRequestBuilder()
+ *         .config(PaymentConfig.DEFAULT)
+ *         .totalPrice("12.34")
+ *         .paymentDataRequest();
+ * </pre>
+ */
+public final class GooglePayRequestBuilder {
+
+    private static final int API_VERSION = 2;
+    private static final int API_VERSION_MINOR = 0;
+
+    private final JsonStreamWriter writer = new JsonStreamWriter();
+
+    private String[] allowedAuthMethods = PaymentRequests.ALLOWED_AUTH_METHODS;
+    private String[] allowedCardNetworks = PaymentRequests.ALLOWED_CARD_NETWORKS;
+    private String billingAddressFormat = PaymentRequests.BILLING_ADDRESS_FORMAT;
+
+    private String gateway;
+    private String gatewayMerchantId;
+
+    private String totalPrice;
+    private String totalPriceStatus = PaymentRequests.TOTAL_PRICE_STATUS;
+    private String countryCode;
+    private String currencyCode;
+
+    private String merchantName;
+
+    /**
+     * Takes the tokenization specification, country, currency and merchant name of the config
+     */
+    public GooglePayRequestBuilder config(PaymentConfig config) {
+        return tokenizationSpecification(config.getGateway(), config.getGatewayMerchantId())
+                .merchantInfo(config.getMerchantName())
+                .transactionInfo(totalPrice, totalPriceStatus, config.getCountryCode(), config.getCurrencyCode());
+    }
+
+    /**
+     * @param methods card authentication methods, PAN_ONLY and CRYPTOGRAM_3DS by default
+     */
+    public GooglePayRequestBuilder allowedAuthMethods(String... methods) {
+        allowedAuthMethods = methods;
+        return this;
+    }
+
+    /**
+     * @param networks card networks, see PaymentRequests.ALLOWED_CARD_NETWORKS for the default
+     */
+    public GooglePayRequestBuilder allowedCardNetworks(String... networks) {
+        allowedCardNetworks = networks;
+        return this;
+    }
+
+    /**
+     * @param format MIN or FULL, null if no billing address is required. FULL by default
+     */
+    public GooglePayRequestBuilder billingAddressParameters(String format) {
+        billingAddressFormat = format;
+        return this;
+    }
+
+    /**
+     * PAYMENT_GATEWAY tokenization of the CARD payment method
+     *
+     * @param gateway           gateway identifier
+     * @param gatewayMerchantId the app's merchant identifier at the gateway
+     */
+    public GooglePayRequestBuilder tokenizationSpecification(String gateway, String gatewayMerchantId) {
+        this.gateway = gateway;
+        this.gatewayMerchantId = gatewayMerchantId;
+        return this;
+    }
+
+    /**
+     * @param totalPrice       total price, see {@link PaymentRequests#microsToString(long)}
+     * @param totalPriceStatus FINAL by default
+     * @param countryCode      ISO 3166-1 alpha-2 country code of the merchant
+     * @param currencyCode     ISO 4217 currency code of the price
+     */
+    public GooglePayRequestBuilder transactionInfo(String totalPrice, String totalPriceStatus,
+                                                   String countryCode, String currencyCode) {
+        this.totalPrice = totalPrice;
+        this.totalPriceStatus = totalPriceStatus;
+        this.countryCode = countryCode;
+        this.currencyCode = currencyCode;
+        return this;
+    }
+
+    /**
+     * @param totalPrice total price, see {@link PaymentRequests#microsToString(long)}
+     */
+    public GooglePayRequestBuilder totalPrice(String totalPrice) {
+        this.totalPrice = totalPrice;
+        return this;
+    }
+
+    /**
+     * @param merchantName user visible merchant name
+     */
+    public GooglePayRequestBuilder merchantInfo(String merchantName) {
+        this.merchantName = merchantName;
+        return this;
+    }
+
+    /**
+     * @return the IsReadyToPayRequest in the builder's buffer, valid until the next write
+     */
+    public CharSequence writeIsReadyToPayRequest() {
+        writer.reset().beginObject();
+        writeBase();
+        writer.name("allowedPaymentMethods").beginArray()
+                .beginObject();
+        writeBaseCardPaymentMethod();
+        writer.endObject()
+                .endArray();
+        return writer.endObject().buffer();
+    }
+
+    /**
+     * @return the PaymentDataRequest in the builder's buffer, valid until the next write
+     * @throws IllegalStateException if the tokenization specification, transaction or merchant info is missing
+     */
+    public CharSequence writePaymentDataRequest() {
+        if (gateway == null || gatewayMerchantId == null) {
+            throw new IllegalStateException("tokenizationSpecification is missing");
+        }
+        if (totalPrice == null || countryCode == null || currencyCode == null) {
+            throw new IllegalStateException("transactionInfo is missing");
+        }
+        if (merchantName == null) {
+            throw new IllegalStateException("merchantInfo is missing");
+        }
+        writer.reset().beginObject();
+        writeBase();
+        writer.name("allowedPaymentMethods").beginArray()
+                .beginObject();
+        writeBaseCardPaymentMethod();
+        writer.name("tokenizationSpecification").beginObject()
+                .name("type").value("PAYMENT_GATEWAY")
+                .name("parameters").beginObject()
+                .name("gateway").value(gateway)
+                .name("gatewayMerchantId").value(gatewayMerchantId)
+                .endObject()
+                .endObject();
+        writer.endObject()
+                .endArray();
+        writer.name("transactionInfo").beginObject()
+                .name("totalPrice").value(totalPrice);
+        if (totalPriceStatus != null) {
+            writer.name("totalPriceStatus").value(totalPriceStatus);
+        }
+        writer.name("countryCode").value(countryCode)
+                .name("currencyCode").value(currencyCode)
+                .endObject();
+        writer.name("merchantInfo").beginObject()
+                .name("merchantName").value(merchantName)
+                .endObject();
+        return writer.endObject().buffer();
+    }
+
+    /**
+     * @return a copy of {@link #writeIsReadyToPayRequest()}
+     */
+    public String isReadyToPayRequest() {
+        return writeIsReadyToPayRequest().toString();
+    }
+
+    /**
+     * @return a copy of {@link #writePaymentDataRequest()}
+     */
+    public String paymentDataRequest() {
+        return writePaymentDataRequest().toString();
+    }
+
+    private void writeBase() {
+        writer.name("apiVersion").value(API_VERSION)
+                .name("apiVersionMinor").value(API_VERSION_MINOR);
+    }
+
+    private void writeBaseCardPaymentMethod() {
+        writer.name("type").value("CARD")
+                .name("parameters").beginObject()
+                .name("allowedAuthMethods").array(allowedAuthMethods)
+                .name("allowedCardNetworks").array(allowedCardNetworks)
+                .name("billingAddressRequired").value(billingAddressFormat != null);
+        if (billingAddressFormat != null) {
+            writer.name("billingAddressParameters").beginObject()
+                    .name("format").value(billingAddressFormat)
+                    .endObject();
+        }
+        writer.endObject();
+    }
+}
@@ -0,0 +1,294 @@
+package lt.myapp.myapp.Payment;
+
+import org.json.JSONException;
+
+/**
+ * Pulls a few values out of a JSON document in one pass, without building the object tree.
+ * <p>
+ * Paths are object member names from the root joined by dots, e.g. "paymentMethodData.tokenizationData.token".
+ * Only the objects on a requested path are entered, everything else is skipped by matching brackets and quotes,
+ * and the scan stops as soon as every path has a value. Strings are unescaped, other values (numbers, booleans,
+ * objects, arrays) are returned as their JSON text. Arrays are never entered. The first occurrence of a duplicated
+ * name wins, and a path that is a prefix of another one takes the object, the longer one is not looked up in it.
+ * An extractor is immutable and can be shared between threads.
+ */
+public final class JsonPathExtractor {
+
+    private final String[][] paths;
+    // bit i set if path i has exactly depth + 1 names, indexed by depth
+    private final long[] leavesAtDepth;
+
+    /**
+     * @param paths dotted member paths, at most 64
+     */
+    public JsonPathExtractor(String... paths) {
+        if (paths.length == 0 || paths.length > 64) {
+            throw new IllegalArgumentException("1 to 64 paths, not " + paths.length);
+        }
+        this.paths = new String[paths.length][];
+        int maxDepth = 0;
+        for (int i = 0; i < paths.length; i++) {
+            this.paths[i] = paths[i].split("\\.");
+            maxDepth = Math.max(maxDepth, this.paths[i].length);
+        }
+        leavesAtDepth = new long[maxDepth];
+        for (int i = 0; i < paths.length; i++) {
+            leavesAtDepth[this.paths[i].length - 1] |= 1L << i;
+        }
+    }
+
+    /**
+     * @param json the document
+     * @return the value of each path in constructor order, null where the document doesn't have it
+     * @throws JSONException if the part of the document read before all values were found is malformed
+     */
+    public String[] extract(String json) throws JSONException {
+        String[] values = new String[paths.length];
+        Scan scan = new Scan(json, values);
+        scan.skipWhitespace();
+        if (scan.peek() != '{') {
+            throw scan.syntaxError("A JSONObject text must begin with '{'");
+        }
+        scan.object(paths.length == 64 ? -1L : (1L << paths.length) - 1, 0);
+        return values;
+    }
+
+    private final class Scan {
+        private final String json;
+        private final String[] values;
+        private int pos;
+        private long missing;
+
+        Scan(String json, String[] values) {
+            this.json = json;
+            this.values = values;
+            missing = paths.length == 64 ? -1L : (1L << paths.length) - 1;
+        }
+
+        /**
+         * Reads the object at pos, entering only members on one of the candidate paths
+         *
+         * @param candidates paths whose first depth names lead here
+         */
+        void object(long candidates, int depth) throws JSONException {
+            pos++;//{
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return;
+            }
+            while (true) {
+                if (peek() != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                long matched = matchName(candidates, depth);
+                skipWhitespace();
+                if (peek() != ':') {
+                    throw syntaxError("Expected a ':' after a key");
+                }
+                pos++;
+                skipWhitespace();
+
+                long leavesHere = depth < leavesAtDepth.length ? leavesAtDepth[depth] : 0;
+                long leaves = matched & leavesHere & missing;
+                long deeper = matched & ~leavesHere & missing;
+                if (leaves != 0) {
+                    String value = value();
+                    for (long bits = leaves; bits != 0; bits &= bits - 1) {
+                        values[Long.numberOfTrailingZeros(bits)] = value;
+                    }
+                    missing &= ~leaves;
+                } else if (deeper != 0 && peek() == '{') {
+                    object(deeper, depth + 1);
+                } else {
+                    skipValue();
+                }
+                if (missing == 0) {
+                    return;
+                }
+
+                skipWhitespace();
+                char c = peek();
+                pos++;
+                if (c == '}') {
+                    return;
+                }
+                if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+                skipWhitespace();
+            }
+        }
+
+        /**
+         * Reads the member name at pos
+         *
+         * @return the candidates whose name at depth is this one
+         */
+        private long matchName(long candidates, int depth) throws JSONException {
+            int start = pos + 1;
+            boolean escaped = skipString();
+            int end = pos - 1;
+            String decoded = null;
+            long matched = 0;
+            for (long bits = candidates; bits != 0; bits &= bits - 1) {
+                int path = Long.numberOfTrailingZeros(bits);
+                if (paths[path].length <= depth) {
+                    continue;
+                }
+                String name = paths[path][depth];
+                boolean equal;
+                if (escaped) {
+                    if (decoded == null) {
+                        decoded = decode(start, end);
+                    }
+                    equal = decoded.equals(name);
+                } else {
+                    equal = end - start == name.length() && json.regionMatches(start, name, 0, name.length());
+                }
+                if (equal) {
+                    matched |= 1L << path;
+                }
+            }
+            return matched;
+        }
+
+        /**
+         * @return the value at pos, unescaped if it's a string, as JSON text otherwise
+         */
+        private String value() throws JSONException {
+            if (peek() == '"') {
+                int start = pos + 1;
+                boolean escaped = skipString();
+                return escaped ? decode(start, pos - 1) : json.substring(start, pos - 1);
+            }
+            int start = pos;
+            skipValue();
+            return json.substring(start, pos);
+        }
+
+        private void skipValue() throws JSONException {
+            char c = peek();
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                skipNested();
+            } else {
+                int start = pos;
+                while (pos < json.length()) {
+                    c = json.charAt(pos);
+                    if (c == ',' || c == '}' || c == ']' || c <= ' ') {
+                        break;
+                    }
+                    pos++;
+                }
+                if (pos == start) {
+                    throw syntaxError("Missing value");
+                }
+            }
+        }
+
+        private void skipNested() throws JSONException {
+            int nesting = 0;
+            do {
+                char c = peek();
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    nesting++;
+                } else if (c == '}' || c == ']') {
+                    nesting--;
+                }
+                pos++;
+            } while (nesting > 0);
+        }
+
+        /**
+         * Moves past the string at pos
+         *
+         * @return true if it has escapes
+         */
+        private boolean skipString() throws JSONException {
+            boolean escaped = false;
+            pos++;//"
+            while (true) {
+                if (pos >= json.length()) {
+                    throw syntaxError("Unterminated string");
+                }
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return escaped;
+                }
+                if (c == '\\') {
+                    escaped = true;
+                    pos++;
+                }
+            }
+        }
+
+        private String decode(int start, int end) throws JSONException {
+            StringBuilder out = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                char c = json.charAt(i);
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                c = json.charAt(++i);
+                switch (c) {
+                    case 'b':
+                        out.append('\b');
+                        break;
+                    case 'f':
+                        out.append('\f');
+                        break;
+                    case 'n':
+                        out.append('\n');
+                        break;
+                    case 'r':
+                        out.append('\r');
+                        break;
+                    case 't':
+                        out.append('\t');
+                        break;
+                    case 'u':
+                        if (i + 4 >= end) {
+                            pos = i;
+                            throw syntaxError("Unterminated escape sequence");
+                        }
+                        try {
+                            out.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                        } catch (NumberFormatException e) {
+                            pos = i;
+                            throw syntaxError("Illegal escape.");
+                        }
+                        i += 4;
+                        break;
+                    default:
+                        out.append(c);//" \ / and the lenient rest
+                        break;
+                }
+            }
+            return out.toString();
+        }
+
+        void skipWhitespace() {
+            while (pos < json.length() && json.charAt(pos) <= ' ') {
+                pos++;
+            }
+        }
+
+        char peek() throws JSONException {
+            if (pos >= json.length()) {
+                throw syntaxError("End of input");
+            }
+            return json.charAt(pos);
+        }
+
+        JSONException syntaxError(String message) {
+            return new JSONException(message + " at character " + pos);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package lt.myapp.myapp.Payment;
+
+/**
+ * Minimal streaming JSON writer into a reusable buffer, no intermediate object graph.
+ * <p>
+ * Compact output escaped the way android's org.json does it (quote, backslash, slash, control characters), names are
+ * written in call order. Nesting is not validated beyond what the comma bookkeeping needs, the typed callers
+ * ({@link GooglePayRequestBuilder}) keep it well formed. Not thread safe, reuse one per thread.
+ */
+public final class JsonStreamWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder out;
+    // first[depth] is true until the first element of the open object or array is written
+    private boolean[] first = new boolean[8];
+    private int depth;
+    // a name was just written, the next value needs no comma
+    private boolean afterName;
+
+    public JsonStreamWriter() {
+        this(512);
+    }
+
+    /**
+     * @param capacity initial buffer size in chars, it grows as needed and is kept across {@link #reset()}
+     */
+    public JsonStreamWriter(int capacity) {
+        out = new StringBuilder(capacity);
+    }
+
+    /**
+     * Empties the buffer for the next document, keeps its capacity
+     */
+    public JsonStreamWriter reset() {
+        out.setLength(0);
+        depth = 0;
+        afterName = false;
+        return this;
+    }
+
+    public JsonStreamWriter beginObject() {
+        return open('{');
+    }
+
+    public JsonStreamWriter endObject() {
+        return close('}');
+    }
+
+    public JsonStreamWriter beginArray() {
+        return open('[');
+    }
+
+    public JsonStreamWriter endArray() {
+        return close(']');
+    }
+
+    public JsonStreamWriter name(String name) {
+        separate();
+        string(name);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonStreamWriter value(String value) {
+        separate();
+        if (value == null) {
+            out.append("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) {
+        separate();
+        out.append(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(boolean value) {
+        separate();
+        out.append(value);
+        return this;
+    }
+
+    /**
+     * Writes each value as a string element of an array
+     */
+    public JsonStreamWriter array(String... values) {
+        beginArray();
+        for (String value : values) {
+            value(value);
+        }
+        return endArray();
+    }
+
+    /**
+     * @return the buffer itself, valid until the next write or reset
+     */
+    public CharSequence buffer() {
+        return out;
+    }
+
+    /**
+     * @return a copy of the document written so far
+     */
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private JsonStreamWriter open(char bracket) {
+        separate();
+        out.append(bracket);
+        if (++depth == first.length) {
+            boolean[] grown = new boolean[first.length * 2];
+            System.arraycopy(first, 0, grown, 0, first.length);
+            first = grown;
+        }
+        first[depth] = true;
+        return this;
+    }
+
+    private JsonStreamWriter close(char bracket) {
+        if (depth == 0) {
+            throw new IllegalStateException("nothing to close with " + bracket);
+        }
+        depth--;
+        out.append(bracket);
+        return this;
+    }
+
+    private void separate() {
+        if (afterName) {
+            afterName = false;
+        } else if (depth > 0) {
+            if (first[depth]) {
+                first[depth] = false;
+            } else {
+                out.append(',');
+            }
+        }
+    }
+
+    private void string(String value) {
+        out.append('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    out.append('\\').append(c);
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+                    break;
+            }
+        }
+        out.append('"');
+    }
+}
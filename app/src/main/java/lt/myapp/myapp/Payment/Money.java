@@ -0,0 +1,191 @@
+package lt.myapp.myapp.Payment;
+
+import java.util.Currency;
+
+/**
+ * Amount in micros of a currency, the unit the Google Pay API and the app's prices use.
+ * <p>
+ * Formatting rounds HALF_EVEN to the currency's minor units and writes the same text as
+ * {@code new BigDecimal(micros).divide(1000000).setScale(minorUnits, HALF_EVEN).toString()} for every long, with
+ * plain long arithmetic. The static {@link #formatTo(long, int, StringBuilder)} appends into a caller's buffer
+ * without allocating, for cart totals and price lists formatted over and over.
+ * <pre>
+ * StringBuilder line = new StringBuilder(32);
+ * Money.of(12345678, "EUR").formatTo(line);   // "12.35"
+ * </pre>
+ */
+public final class Money {
+
+    public static final int MICROS_DIGITS = 6;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+            10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+            1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L};
+
+    private final long micros;
+    private final String currencyCode;
+    private final int minorUnits;
+
+    /**
+     * @param micros       amount in micros
+     * @param currencyCode ISO 4217 currency code
+     * @throws IllegalArgumentException for an unknown currency or one without minor units (gold, SDR...)
+     */
+    public static Money of(long micros, String currencyCode) {
+        int minorUnits = Currency.getInstance(currencyCode).getDefaultFractionDigits();
+        if (minorUnits < 0 || minorUnits > MICROS_DIGITS) {
+            throw new IllegalArgumentException(currencyCode + " has no minor units");
+        }
+        return new Money(micros, currencyCode, minorUnits);
+    }
+
+    private Money(long micros, String currencyCode, int minorUnits) {
+        this.micros = micros;
+        this.currencyCode = currencyCode;
+        this.minorUnits = minorUnits;
+    }
+
+    public long getMicros() {
+        return micros;
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    /**
+     * @return digits after the decimal point, 2 for EUR, 0 for JPY, 3 for KWD
+     */
+    public int getMinorUnits() {
+        return minorUnits;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the currencies differ
+     * @throws ArithmeticException      if the sum overflows
+     */
+    public Money plus(Money other) {
+        if (!currencyCode.equals(other.currencyCode)) {
+            throw new IllegalArgumentException("can't add " + other.currencyCode + " to " + currencyCode);
+        }
+        long sum = micros + other.micros;
+        // overflow iff both operands have the other sign than the result
+        if (((micros ^ sum) & (other.micros ^ sum)) < 0) {
+            throw new ArithmeticException("money overflow");
+        }
+        return new Money(sum, currencyCode, minorUnits);
+    }
+
+    /**
+     * @throws ArithmeticException if the product overflows
+     */
+    public Money times(long quantity) {
+        long product = micros * quantity;
+        if (quantity != 0 && (product / quantity != micros || (micros == Long.MIN_VALUE && quantity == -1))) {
+            throw new ArithmeticException("money overflow");
+        }
+        return new Money(product, currencyCode, minorUnits);
+    }
+
+    /**
+     * @return the amount rounded HALF_EVEN to minor units, e.g. cents
+     */
+    public long toMinorUnits() {
+        return roundToMinorUnits(micros, minorUnits);
+    }
+
+    /**
+     * Appends the rounded amount, e.g. "12.35"
+     *
+     * @return out
+     */
+    public StringBuilder formatTo(StringBuilder out) {
+        return formatTo(micros, minorUnits, out);
+    }
+
+    /**
+     * @return the rounded amount as accepted by the Google Pay API totalPrice
+     */
+    public String toPlainString() {
+        return formatTo(micros, minorUnits, new StringBuilder(24)).toString();
+    }
+
+    /**
+     * Appends micros rounded HALF_EVEN to minorUnits digits after the point, allocation free
+     *
+     * @param micros     amount in micros
+     * @param minorUnits digits after the point, 0 to 6
+     * @param out        where the amount is appended
+     * @return out
+     */
+    public static StringBuilder formatTo(long micros, int minorUnits, StringBuilder out) {
+        long minor = roundToMinorUnits(micros, minorUnits);
+        long scale = POWERS_OF_TEN[minorUnits];
+        // |minor| <= |Long.MIN_VALUE| / 10^(6 - minorUnits), so the whole part can always be negated
+        long whole = minor / scale;
+        long fraction = minor % scale;
+        if (minor < 0) {
+            out.append('-');
+            whole = -whole;
+            fraction = -fraction;
+        }
+        appendDigits(out, whole, 1);
+        if (minorUnits > 0) {
+            out.append('.');
+            appendDigits(out, fraction, minorUnits);
+        }
+        return out;
+    }
+
+    /**
+     * @param micros     amount in micros
+     * @param minorUnits digits after the point, 0 to 6
+     * @return the amount in 10^-minorUnits units, rounded HALF_EVEN
+     */
+    public static long roundToMinorUnits(long micros, int minorUnits) {
+        if (minorUnits < 0 || minorUnits > MICROS_DIGITS) {
+            throw new IllegalArgumentException("minor units must be 0 to " + MICROS_DIGITS + ": " + minorUnits);
+        }
+        long unit = POWERS_OF_TEN[MICROS_DIGITS - minorUnits];
+        long quotient = micros / unit;
+        long remainder = micros % unit;
+        if (remainder == 0) {
+            return quotient;
+        }
+        long twice = 2 * Math.abs(remainder);//< 2 * 10^6, can't overflow
+        if (twice > unit || (twice == unit && (quotient & 1) != 0)) {
+            quotient += micros < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    private static void appendDigits(StringBuilder out, long value, int minWidth) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        for (int i = Math.max(digits, minWidth) - 1; i >= 0; i--) {
+            out.append((char) ('0' + (value / POWERS_OF_TEN[i]) % 10));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money other = (Money) o;
+        return micros == other.micros && currencyCode.equals(other.currencyCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (micros ^ (micros >>> 32)) + currencyCode.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return formatTo(micros, minorUnits, new StringBuilder(28)).append(' ').append(currencyCode).toString();
+    }
+}
@@ -0,0 +1,104 @@
+package lt.myapp.myapp.Payment;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A finished payment: the payment method data joined with the time it was taken at.
+ * <p>
+ * {@link #complete} reads the token and asks for the time concurrently, so finishing a payment takes as long as
+ * the slower of the two, never their sum. The time gets a deadline, after it (or when the time source fails) the
+ * fallback answers. The result is one value delivered once to the chosen executor, or one error if the token
+ * can't be read.
+ */
+public final class PaymentCompletion {
+
+    public static final long DEFAULT_DEADLINE = 3000;//ms
+
+    /**
+     * Where the payment time came from, worst last
+     */
+    public enum TimeSource {
+        /** a server answered or a fresh cached sample */
+        NETWORK,
+        /** the drift corrected background sync estimate */
+        ESTIMATE,
+        /** the device clock, nothing better was there in time */
+        DEVICE
+    }
+
+    /**
+     * Payment time and its source
+     */
+    public static final class Time {
+        private final long time;
+        private final TimeSource source;
+
+        public Time(long time, TimeSource source) {
+            this.time = time;
+            this.source = source;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public TimeSource getSource() {
+            return source;
+        }
+    }
+
+    private final PaymentMethodData paymentMethodData;
+    private final Time time;
+
+    PaymentCompletion(PaymentMethodData paymentMethodData, Time time) {
+        this.paymentMethodData = paymentMethodData;
+        this.time = time;
+    }
+
+    public PaymentMethodData getPaymentMethodData() {
+        return paymentMethodData;
+    }
+
+    /**
+     * @return milliseconds since January 1, 1970
+     */
+    public long getTime() {
+        return time.getTime();
+    }
+
+    public TimeSource getTimeSource() {
+        return time.getSource();
+    }
+
+    /**
+     * Joins the token and the time of a payment
+     *
+     * @param token     reads the payment method data, subscribed once
+     * @param time      the preferred time, subscribed at the same time as the token and cancelled at the deadline
+     * @param fallback  time used when the preferred one fails or misses the deadline, called once at most
+     * @param deadline  milliseconds the preferred time may take
+     * @param timer     scheduler of the deadline
+     * @param deliverOn executor receiving the result or the error
+     * @return the completion, cold: nothing starts before subscribe
+     */
+    public static Single<PaymentCompletion> complete(Single<PaymentMethodData> token, Single<Time> time,
+                                                     Callable<Time> fallback, long deadline, Scheduler timer,
+                                                     Executor deliverOn) {
+        Single<Time> bounded = time
+                .timeout(deadline, TimeUnit.MILLISECONDS, timer)
+                .onErrorResumeNext(error -> Single.fromCallable(fallback));
+        return Single.zip(token, bounded, PaymentCompletion::new)
+                .observeOn(Schedulers.from(deliverOn));
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentCompletion{" + paymentMethodData + ", time=" + time.getTime() + " (" + time.getSource() + ")}";
+    }
+}
@@ -0,0 +1,111 @@
+package lt.myapp.myapp.Payment;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import io.reactivex.Single;
+import lt.myapp.myapp.sys.TimeToolsExtra.TimeExecutor;
+
+/**
+ * App wide home of the payments being completed, so an approved payment isn't lost when its activity is recreated
+ * (rotation, dark mode, ...) while the token and time are still on their way.
+ * <p>
+ * The completions run to the end no matter what happens to the activity, only the delivery follows it: results
+ * wait here while no listener is attached and are handed to the next one, each exactly once, on the main thread.
+ * <pre>
+ * PaymentCompletions.getInstance().attach(listener);   // onCreate
+ * PaymentCompletions.getInstance().detach(listener);   // onDestroy
+ * </pre>
+ */
+public final class PaymentCompletions {
+
+    private static final String TAG = "PaymentCompletions";
+
+    private static final PaymentCompletions INSTANCE = new PaymentCompletions(TimeExecutor.mainThread());
+
+    private final Executor mainThread;
+    // finished while nobody was listening (or not yet delivered), oldest first
+    private final Queue<PaymentCompletion> pending = new ArrayDeque<>();
+    private PaymentsUtil.PUListener listener;
+
+    /**
+     * @param mainThread executor the listener is called on
+     */
+    PaymentCompletions(Executor mainThread) {
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * @return the process wide instance
+     */
+    public static PaymentCompletions getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Subscribes to the completion and keeps its result until a listener takes it
+     *
+     * @param completion see {@link PaymentCompletion#complete}
+     */
+    public void track(Single<PaymentCompletion> completion) {
+        completion.subscribe(this::offer, throwable -> Log.e(TAG, "payment completion failed", throwable));
+    }
+
+    /**
+     * Delivers the results waiting here and every later one to the listener, replacing the previous listener
+     *
+     * @param listener called on the main thread
+     */
+    public synchronized void attach(PaymentsUtil.PUListener listener) {
+        this.listener = listener;
+        if (!pending.isEmpty()) {
+            mainThread.execute(this::deliver);
+        }
+    }
+
+    /**
+     * Stops the delivery to the listener, results keep waiting for the next one
+     *
+     * @param listener the attached listener, another one is left attached
+     */
+    public synchronized void detach(PaymentsUtil.PUListener listener) {
+        if (this.listener == listener) {
+            this.listener = null;
+        }
+    }
+
+    /**
+     * @return results waiting for a listener
+     */
+    synchronized int pending() {
+        return pending.size();
+    }
+
+    private synchronized void offer(PaymentCompletion completion) {
+        pending.add(completion);
+        if (listener != null) {
+            mainThread.execute(this::deliver);
+        }
+    }
+
+    /**
+     * Runs on the main thread like attach and detach, so the listener taken here is still attached when it's called
+     */
+    private void deliver() {
+        while (true) {
+            PaymentsUtil.PUListener target;
+            PaymentCompletion completion;
+            synchronized (this) {
+                if (listener == null || pending.isEmpty()) {
+                    return;
+                }
+                target = listener;
+                completion = pending.poll();
+            }
+            target.onSuccess(completion);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package lt.myapp.myapp.Payment;
+
+/**
+ * Merchant and gateway settings of a Google Pay request: everything in a PaymentDataRequest except the price.
+ * <p>
+ * Immutable value, equal configs share one {@link PaymentRequestTemplate}.
+ */
+public final class PaymentConfig {
+
+    /**
+     * The test merchant of this app, TODO: replace with the real merchant and gateway before going live
+     */
+    public static final PaymentConfig DEFAULT = new PaymentConfig(
+            "Example Merchant", "example", "exampleGatewayMerchantId", "LT", "EUR");
+
+    private final String merchantName;
+    private final String gateway;
+    private final String gatewayMerchantId;
+    private final String countryCode;
+    private final String currencyCode;
+
+    /**
+     * @param merchantName      user visible merchant name
+     * @param gateway           gateway identifier, see PaymentMethodTokenizationSpecification
+     * @param gatewayMerchantId the app's merchant identifier at the gateway
+     * @param countryCode       ISO 3166-1 alpha-2 country code of the merchant
+     * @param currencyCode      ISO 4217 currency code of the price
+     */
+    public PaymentConfig(String merchantName, String gateway, String gatewayMerchantId,
+                         String countryCode, String currencyCode) {
+        if (merchantName == null || gateway == null || gatewayMerchantId == null
+                || countryCode == null || currencyCode == null) {
+            throw new IllegalArgumentException("payment config values must not be null");
+        }
+        this.merchantName = merchantName;
+        this.gateway = gateway;
+        this.gatewayMerchantId = gatewayMerchantId;
+        this.countryCode = countryCode;
+        this.currencyCode = currencyCode;
+    }
+
+    public String getMerchantName() {
+        return merchantName;
+    }
+
+    public String getGateway() {
+        return gateway;
+    }
+
+    public String getGatewayMerchantId() {
+        return gatewayMerchantId;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PaymentConfig)) {
+            return false;
+        }
+        PaymentConfig other = (PaymentConfig) o;
+        return merchantName.equals(other.merchantName)
+                && gateway.equals(other.gateway)
+                && gatewayMerchantId.equals(other.gatewayMerchantId)
+                && countryCode.equals(other.countryCode)
+                && currencyCode.equals(other.currencyCode);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = merchantName.hashCode();
+        result = 31 * result + gateway.hashCode();
+        result = 31 * result + gatewayMerchantId.hashCode();
+        result = 31 * result + countryCode.hashCode();
+        result = 31 * result + currencyCode.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentConfig{" + merchantName + ", " + gateway + "/" + gatewayMerchantId
+                + ", " + countryCode + ", " + currencyCode + "}";
+    }
+}
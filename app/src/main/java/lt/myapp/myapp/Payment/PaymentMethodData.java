@@ -0,0 +1,65 @@
+package lt.myapp.myapp.Payment;
+
+import org.json.JSONException;
+
+/**
+ * The parts of a PaymentData response the app uses, read in one pass by a {@link JsonPathExtractor}.
+ *
+ * @see <a href="https://developers.google.com/pay/api/android/reference/response-objects#PaymentMethodData">
+ * PaymentMethodData</a>
+ */
+public final class PaymentMethodData {
+
+    private static final JsonPathExtractor FIELDS = new JsonPathExtractor(
+            "paymentMethodData.tokenizationData.type",
+            "paymentMethodData.tokenizationData.token",
+            "paymentMethodData.info.billingAddress.name");
+
+    private final String tokenizationType;
+    private final String token;
+    private final String billingName;
+
+    /**
+     * @param paymentData PaymentData.toJson()
+     * @throws JSONException if the response is malformed or has no tokenizationData
+     */
+    public static PaymentMethodData parse(String paymentData) throws JSONException {
+        String[] values = FIELDS.extract(paymentData);
+        if (values[0] == null || values[1] == null) {
+            throw new JSONException("paymentMethodData.tokenizationData is missing");
+        }
+        return new PaymentMethodData(values[0], values[1], values[2]);
+    }
+
+    PaymentMethodData(String tokenizationType, String token, String billingName) {
+        this.tokenizationType = tokenizationType;
+        this.token = token;
+        this.billingName = billingName;
+    }
+
+    /**
+     * @return PAYMENT_GATEWAY or DIRECT
+     */
+    public String getTokenizationType() {
+        return tokenizationType;
+    }
+
+    /**
+     * @return the payment token for the gateway
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return the card holder's name, null if no billing address was requested
+     */
+    public String getBillingName() {
+        return billingName;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentMethodData{" + tokenizationType + ", billingName=" + billingName + "}";//no token in logs
+    }
+}
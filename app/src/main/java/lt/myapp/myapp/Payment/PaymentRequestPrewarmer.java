@@ -0,0 +1,137 @@
+package lt.myapp.myapp.Payment;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
+
+/**
+ * Prepares the payment request of the current price in the background, so a click only has to start the sheet.
+ * <p>
+ * One request is kept, keyed by price and {@link PaymentConfig}. Preparing another price or config replaces it,
+ * asking for one that isn't the prepared one prepares it first. A failed build is forgotten, the next ask retries.
+ * <pre>
+ * prewarmer.prepare(price, config);              // as soon as the price is known
+ * T request = prewarmer.peek(price, config);      // on click, null while it's still being built
+ * prewarmer.get(price, config).subscribe(...);    // or wait for it
+ * </pre>
+ *
+ * @param <T> the request type, PaymentDataRequest in the app
+ */
+public final class PaymentRequestPrewarmer<T> {
+
+    private final Function<String, T> factory;
+    private final Scheduler scheduler;
+
+    private Key key;
+    private Single<T> prepared;
+    private Disposable warming;
+    private T ready;
+
+    /**
+     * @param factory   turns the PaymentDataRequest JSON into the request, e.g. PaymentDataRequest::fromJson
+     * @param scheduler where the request is built, Schedulers.computation() in the app
+     */
+    public PaymentRequestPrewarmer(Function<String, T> factory, Scheduler scheduler) {
+        this.factory = factory;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Starts building the request unless it's already the prepared one
+     *
+     * @param micros price in micros, rounded to the minor units of the config's currency, see {@link Money}
+     * @param config merchant, gateway, country and currency of the request
+     */
+    public synchronized void prepare(long micros, PaymentConfig config) {
+        Key requested = new Key(micros, config);
+        if (requested.equals(key)) {
+            return;
+        }
+        invalidate();
+        key = requested;
+        // forgotten before the cache stores the error, so a caller seeing the error always gets a fresh build next
+        Single<T> single = build(micros, config)
+                .doOnError(error -> onFailed(requested))
+                .cache();
+        prepared = single;
+        warming = single.subscribe(request -> onReady(requested, request), error -> {
+            // already forgotten by onFailed
+        });
+    }
+
+    /**
+     * @return the prepared request if it's built, null if it's not prepared or still being built
+     */
+    public synchronized T peek(long micros, PaymentConfig config) {
+        return new Key(micros, config).equals(key) ? ready : null;
+    }
+
+    /**
+     * @return the request, right away if it was prepared, otherwise once it's built on the scheduler
+     */
+    public synchronized Single<T> get(long micros, PaymentConfig config) {
+        prepare(micros, config);
+        return prepared;
+    }
+
+    /**
+     * Forgets the prepared request, a build still running is not delivered
+     */
+    public synchronized void invalidate() {
+        if (warming != null) {
+            warming.dispose();
+        }
+        warming = null;
+        key = null;
+        prepared = null;
+        ready = null;
+    }
+
+    private Single<T> build(long micros, PaymentConfig config) {
+        return Single.fromCallable(() -> {
+            String json = PaymentRequestTemplate.forConfig(config)
+                    .render(Money.of(micros, config.getCurrencyCode()).toPlainString());
+            if (json == null) {
+                throw new IllegalStateException("PaymentDataRequest couldn't be built for " + config);
+            }
+            return factory.apply(json);
+        }).subscribeOn(scheduler);
+    }
+
+    private synchronized void onReady(Key built, T request) {
+        if (key == built) {//same preparation, not just an equal price
+            ready = request;
+        }
+    }
+
+    private synchronized void onFailed(Key built) {
+        if (key == built) {
+            invalidate();
+        }
+    }
+
+    private static final class Key {
+        private final long micros;
+        private final PaymentConfig config;
+
+        Key(long micros, PaymentConfig config) {
+            this.micros = micros;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return micros == other.micros && config.equals(other.config);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (micros ^ (micros >>> 32)) + config.hashCode();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package lt.myapp.myapp.Payment;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized PaymentDataRequest of one {@link PaymentConfig} with a hole for the price.
+ * <p>
+ * The request tree is built and serialized once per config by {@link PaymentRequests#getPaymentDataRequest(String,
+ * PaymentConfig)} itself, with a marker as the price. Rendering a price copies the text around the marker into one
+ * string, so the result is byte for byte what {@code getPaymentDataRequest(price, config).toString()} gives, key
+ * order and escaping of the platform's org.json included.
+ * <pre>PaymentDataRequest.fromJson(PaymentRequestTemplate.forConfig(PaymentConfig.DEFAULT).render("12.34"));</pre>
+ */
+public final class PaymentRequestTemplate {
+
+    // needs no escaping in JSON and can't be a price
+    private static final String PRICE_MARKER = "__totalPrice__";
+
+    private static final ConcurrentHashMap<PaymentConfig, PaymentRequestTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final PaymentConfig config;
+    // text before and after the price, both null when the config can't be templated
+    private final String head;
+    private final String tail;
+
+    /**
+     * @param config merchant, gateway, country and currency of the request
+     * @return the template of the config, built on the first call
+     */
+    public static PaymentRequestTemplate forConfig(PaymentConfig config) {
+        PaymentRequestTemplate template = TEMPLATES.get(config);
+        if (template == null) {
+            PaymentRequestTemplate created = new PaymentRequestTemplate(config);
+            template = TEMPLATES.putIfAbsent(config, created);
+            if (template == null) {
+                template = created;
+            }
+        }
+        return template;
+    }
+
+    private PaymentRequestTemplate(PaymentConfig config) {
+        this.config = config;
+        JSONObject request = PaymentRequests.getPaymentDataRequest(PRICE_MARKER, config);
+        String json = request != null ? request.toString() : null;
+        int marker = json != null ? json.indexOf(PRICE_MARKER) : -1;
+        // the marker must be the price and nothing else, a merchant named like it is served by the slow path
+        if (marker < 0 || marker != json.lastIndexOf(PRICE_MARKER)) {
+            head = null;
+            tail = null;
+        } else {
+            head = json.substring(0, marker);
+            tail = json.substring(marker + PRICE_MARKER.length());
+        }
+    }
+
+    public PaymentConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @param price total price, see {@link PaymentRequests#microsToString(long)}
+     * @return the PaymentDataRequest JSON for the price, null if it couldn't be built
+     */
+    public String render(String price) {
+        if (head == null || !isPlain(price)) {
+            JSONObject request = PaymentRequests.getPaymentDataRequest(price, config);
+            return request != null ? request.toString() : null;
+        }
+        return new StringBuilder(head.length() + price.length() + tail.length())
+                .append(head)
+                .append(price)
+                .append(tail)
+                .toString();
+    }
+
+    /**
+     * @return true if the price is written the same escaped or not
+     */
+    private static boolean isPlain(String price) {
+        if (price == null || price.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < price.length(); i++) {
+            char c = price.charAt(i);
+            if ((c < '0' || c > '9') && c != '.' && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,293 @@
+package lt.myapp.myapp.Payment;
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Google Pay API request objects and price formatting.
+ * <p>
+ * Plain java (org.json only) so it can be exercised off-device by the benchmark module;
+ * {@link PaymentsUtil} delegates here.
+ */
+public final class PaymentRequests {
+    private static final BigDecimal MICROS = new BigDecimal(1000000d);
+
+    // shared with GooglePayRequestBuilder so both paths describe the same card payment method
+    static final String[] ALLOWED_CARD_NETWORKS = {"AMEX", "DISCOVER", "INTERAC", "JCB", "MASTERCARD", "VISA"};
+    static final String[] ALLOWED_AUTH_METHODS = {"PAN_ONLY", "CRYPTOGRAM_3DS"};
+    static final String BILLING_ADDRESS_FORMAT = "FULL";
+    static final String TOTAL_PRICE_STATUS = "FINAL";
+
+    private PaymentRequests() {
+    }
+
+    /**
+     * 1. defining api version
+     * Create a Google Pay API base request object with properties used in all requests.
+     *
+     * @return Google Pay API base request object.
+     * @throws JSONException
+     */
+    private static JSONObject getBaseRequest() throws JSONException {
+        return new JSONObject().put("apiVersion", 2).put("apiVersionMinor", 0);
+    }
+
+    /**
+     * 2. Choosing a payment tokenization method: GATEWAY
+     * <p>
+     * Gateway Integration: Identify your gateway and your app's gateway merchant identifier.
+     *
+     * <p>The Google Pay API response will return an encrypted payment method capable of being charged
+     * by a supported gateway after payer authorization.
+     *
+     * @param config gateway and gateway merchant identifier
+     * @return Payment data tokenization for the CARD payment method.
+     * @throws JSONException
+     * @see <a href=
+     * "https://developers.google.com/pay/api/android/reference/object#PaymentMethodTokenizationSpecification">PaymentMethodTokenizationSpecification</a>
+     */
+    private static JSONObject getGatewayTokenizationSpecification(PaymentConfig config) throws JSONException {
+        return new JSONObject() {{
+               /*
+            For CARD payment method, use PAYMENT_GATEWAY or DIRECT. For PAYPAL PaymentMethod, use DIRECT with no parameter.
+            https://developers.google.com/pay/api/android/reference/request-objects#gateway
+             */
+            put("type", "PAYMENT_GATEWAY");
+            put("parameters", new JSONObject() {
+                {
+                    put("gateway", config.getGateway());
+                    put("gatewayMerchantId", config.getGatewayMerchantId());
+                }
+            });
+        }};
+    }
+
+
+    /**
+     * 3. Define supported payment card networks
+     * <p>
+     * Card networks supported by your app and your gateway.
+     *
+     * <p>TODO: Confirm card networks supported by your app and gateway & update ALLOWED_CARD_NETWORKS.
+     *
+     * @return Allowed card networks
+     * @see <a
+     * href="https://developers.google.com/pay/api/android/reference/object#CardParameters">CardParameters</a>
+     */
+    private static JSONArray getAllowedCardNetworks() {
+        return toJsonArray(ALLOWED_CARD_NETWORKS);
+    }
+
+    /**
+     * The Google Pay API may return cards on file on Google.com (PAN_ONLY) and/or a device token on an Android device authenticated with a 3-D Secure cryptogram (CRYPTOGRAM_3DS).
+     * <p>
+     * Card authentication methods supported by your app and your gateway.
+     *
+     * <p>TODO: Confirm your processor supports Android device tokens on your supported card networks
+     * and update ALLOWED_AUTH_METHODS.
+     *
+     * @return Allowed card authentication methods.
+     * @see <a
+     * href="https://developers.google.com/pay/api/android/reference/object#CardParameters">CardParameters</a>
+     */
+    private static JSONArray getAllowedCardAuthMethods() {
+        return toJsonArray(ALLOWED_AUTH_METHODS);
+    }
+
+    private static JSONArray toJsonArray(String[] values) {
+        JSONArray array = new JSONArray();
+        for (String value : values) {
+            array.put(value);
+        }
+        return array;
+    }
+
+    /**
+     * 4. Describe your allowed payment methods
+     * <p>
+     * Describe your app's support for the CARD payment method.
+     *
+     * <p>The provided properties are applicable to both an IsReadyToPayRequest and a
+     * PaymentDataRequest.
+     *
+     * @return A CARD PaymentMethod object describing accepted cards.
+     * @throws JSONException
+     * @see <a
+     * href="https://developers.google.com/pay/api/android/reference/object#PaymentMethod">PaymentMethod</a>
+     */
+    private static JSONObject getBaseCardPaymentMethod() throws JSONException {
+        JSONObject cardPaymentMethod = new JSONObject();
+        cardPaymentMethod.put("type", "CARD");
+
+        JSONObject parameters = new JSONObject();
+        parameters.put("allowedAuthMethods", getAllowedCardAuthMethods());
+        parameters.put("allowedCardNetworks", getAllowedCardNetworks());
+        // Optionally, you can add billing address/phone number associated with a CARD payment method.
+        parameters.put("billingAddressRequired", true);
+
+        JSONObject billingAddressParameters = new JSONObject();
+        billingAddressParameters.put("format", BILLING_ADDRESS_FORMAT);
+
+        parameters.put("billingAddressParameters", billingAddressParameters);
+
+        cardPaymentMethod.put("parameters", parameters);
+
+        return cardPaymentMethod;
+    }
+
+    /**
+     * Describe the expected returned payment data for the CARD payment method
+     *
+     * @param config gateway settings of the tokenization specification
+     * @return A CARD PaymentMethod describing accepted cards and optional fields.
+     * @throws JSONException
+     * @see <a
+     * href="https://developers.google.com/pay/api/android/reference/object#PaymentMethod">PaymentMethod</a>
+     */
+    private static JSONObject getCardPaymentMethod(PaymentConfig config) throws JSONException {
+        JSONObject cardPaymentMethod = getBaseCardPaymentMethod();
+        cardPaymentMethod.put("tokenizationSpecification", getGatewayTokenizationSpecification(config));
+
+        return cardPaymentMethod;
+    }
+
+    /**
+     * 6. Determine readiness to pay with the Google Pay API, part "getIsReadyToPayRequest"
+     * <p>
+     * An object describing accepted forms of payment by your app, used to determine a viewer's
+     * readiness to pay.
+     *
+     * @return API version and payment methods supported by the app.
+     * @see <a
+     * href="https://developers.google.com/pay/api/android/reference/object#IsReadyToPayRequest">IsReadyToPayRequest</a>
+     */
+    public static /*Optional<*/JSONObject/*>*/ getIsReadyToPayRequest() {
+        try {
+            JSONObject isReadyToPayRequest = getBaseRequest();
+            isReadyToPayRequest.put(
+                    "allowedPaymentMethods", new JSONArray().put(getBaseCardPaymentMethod()));
+
+            return isReadyToPayRequest; //Optional.of(isReadyToPayRequest); // API 24
+        } catch (JSONException e) {
+            return null; //Optional.empty(); //API 24
+        }
+    }
+
+
+    /**
+     * Provide Google Pay API with a payment amount, currency, and amount status.
+     * Important: European Economic Area (EEA) merchants must pass in countryCode, totalPrice, totalPriceStatus and merchantName parameters to meet SCA requirements.
+     *
+     * @param price  total price, see {@link #microsToString(long)}
+     * @param config country and currency of the price
+     * @return information about the requested payment.
+     * @throws JSONException
+     * @see <a
+     * href="https://developers.google.com/pay/api/android/reference/object#TransactionInfo">TransactionInfo</a>
+     */
+    private static JSONObject getTransactionInfo(String price, PaymentConfig config) throws JSONException {
+        JSONObject transactionInfo = new JSONObject();
+        transactionInfo.put("totalPrice", price);
+        transactionInfo.put("totalPriceStatus", TOTAL_PRICE_STATUS);
+        transactionInfo.put("countryCode", config.getCountryCode());
+        transactionInfo.put("currencyCode", config.getCurrencyCode());
+
+        return transactionInfo;
+    }
+
+    /**
+     * Information about the merchant requesting payment information
+     * Provide a user-visible merchant name
+     *
+     * @param config user visible merchant name
+     * @return Information about the merchant.
+     * @throws JSONException
+     * @see <a
+     * href="https://developers.google.com/pay/api/android/reference/object#MerchantInfo">MerchantInfo</a>
+     */
+    private static JSONObject getMerchantInfo(PaymentConfig config) throws JSONException {
+        return new JSONObject().put("merchantName", config.getMerchantName());
+    }
+
+    /**
+     * 7.Create a PaymentDataRequest object
+     * An object describing information requested in a Google Pay payment sheet
+     *
+     * @param price total price, see {@link #microsToString(long)}
+     * @return Payment data expected by your app.
+     * @see <a
+     * href="https://developers.google.com/pay/api/android/reference/object#PaymentDataRequest">PaymentDataRequest</a>
+     */
+    public static /*Optional<*/JSONObject/*>*/ getPaymentDataRequest(String price) {
+        return getPaymentDataRequest(price, PaymentConfig.DEFAULT);
+    }
+
+    /**
+     * @param price  total price, see {@link #microsToString(long)}
+     * @param config merchant, gateway, country and currency of the request
+     * @return Payment data expected by your app, null if it couldn't be built.
+     * @see PaymentRequestTemplate for the serialized form without rebuilding the tree per price
+     */
+    public static /*Optional<*/JSONObject/*>*/ getPaymentDataRequest(String price, PaymentConfig config) {
+        try {
+            JSONObject paymentDataRequest = getBaseRequest();
+            paymentDataRequest.put("allowedPaymentMethods", new JSONArray().put(getCardPaymentMethod(config)));
+            paymentDataRequest.put("transactionInfo", getTransactionInfo(price, config));
+            paymentDataRequest.put("merchantInfo", getMerchantInfo(config));
+
+            /* An optional shipping address requirement is a top-level property of the PaymentDataRequest
+            JSON object. */
+            /*paymentDataRequest.put("shippingAddressRequired", true);
+
+            JSONObject shippingAddressParameters = new JSONObject();
+            shippingAddressParameters.put("phoneNumberRequired", false);
+
+            JSONArray allowedCountryCodes = new JSONArray(Constants.SHIPPING_SUPPORTED_COUNTRIES);
+
+            shippingAddressParameters.put("allowedCountryCodes", allowedCountryCodes);
+            paymentDataRequest.put("shippingAddressParameters", shippingAddressParameters);*/
+            return /*Optional.of(*/paymentDataRequest/*)*/;
+        } catch (JSONException e) {
+            return /*Optional.empty()*/ null;
+        }
+    }
+
+    /**
+     * Converts micros to a string format accepted by {@link #getPaymentDataRequest}.
+     *
+     * @param micros value of the price.
+     */
+    public static String microsToString(long micros) {
+        // same text as microsToBigDecimal(micros).toString() without the BigDecimal
+        return Money.formatTo(micros, 2, new StringBuilder(24)).toString();
+    }
+
+    /**
+     * Converts micros to a big decimal format
+     *
+     * @param micros
+     * @return
+     */
+    public static BigDecimal microsToBigDecimal(long micros) {
+        return new BigDecimal(micros).divide(MICROS).setScale(2, RoundingMode.HALF_EVEN);
+    }
+}
@@ -20,11 +20,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 import android.view.View;
-import android.widget.Toast;
 
 import com.google.android.gms.common.api.Status;
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.Task;
 import com.google.android.gms.wallet.AutoResolveHelper;
 import com.google.android.gms.wallet.IsReadyToPayRequest;
 import com.google.android.gms.wallet.PaymentData;
@@ -34,30 +31,42 @@ import com.google.android.gms.wallet.Wallet;
 import com.google.android.gms.wallet.WalletConstants;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.concurrent.Executor;
 
-
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import androidx.appcompat.app.AlertDialog;
-import lt.myapp.myapp.sys.TimeToolsExtra.SNTPClient;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.schedulers.Schedulers;
+import lt.myapp.myapp.sys.TimeToolsExtra.ClockDriftEstimator;
+import lt.myapp.myapp.sys.TimeToolsExtra.NetworkClock;
+import lt.myapp.myapp.sys.TimeToolsExtra.NtpSample;
+import lt.myapp.myapp.sys.TimeToolsExtra.SntpRx;
+import lt.myapp.myapp.sys.TimeToolsExtra.TimeExecutor;
+import lt.myapp.myapp.sys.TimeToolsExtra.TimeSyncScheduler;
+import lt.myapp.myapp.sys.Watchdog.MainThreadGuard;
 
 public class PaymentsUtil {
+    private static final String TAG = "PaymentsUtil";
+
     /**
      * Arbitrarily-picked constant integer you define to track a request for payment data activity.
      *
      * @value #LOAD_PAYMENT_DATA_REQUEST_CODE
      */
     public static final int LOAD_PAYMENT_DATA_REQUEST_CODE = 991;//default
-    private static final BigDecimal MICROS = new BigDecimal(1000000d);
 
     /**
-     * our listener
+     * our listener, called once per successful payment with its token and time
      */
     public interface PUListener {
-        void onSuccess(JSONObject paymentMethodData);
+        void onSuccess(PaymentCompletion completion);
     }
 
     /**
@@ -68,6 +77,14 @@ public class PaymentsUtil {
      */
     private PaymentsClient paymentsClient = null;
 
+    private volatile PaymentConfig config = PaymentConfig.DEFAULT;
+
+    /**
+     * PaymentDataRequest of the current price, built in the background before the click
+     */
+    private final PaymentRequestPrewarmer<PaymentDataRequest> preparedRequests =
+            new PaymentRequestPrewarmer<>(PaymentDataRequest::fromJson, Schedulers.computation());
+
     /**
      * Constructor with payments client initialization
      *
@@ -78,118 +95,70 @@ public class PaymentsUtil {
     }
 
     /**
-     * 1. defining api version
-     * Create a Google Pay API base request object with properties used in all requests.
-     *
-     * @return Google Pay API base request object.
-     * @throws JSONException
+     * @param config merchant, gateway, country and currency of the next payment requests, a prepared request of
+     *               another config is not used
      */
-    private static JSONObject getBaseRequest() throws JSONException {
-        return new JSONObject().put("apiVersion", 2).put("apiVersionMinor", 0);
+    public void setConfig(PaymentConfig config) {
+        this.config = config;
+    }
+
+    public PaymentConfig getConfig() {
+        return config;
     }
 
     /**
-     * 2. Choosing a payment tokenization method: GATEWAY
-     * <p>
-     * Gateway Integration: Identify your gateway and your app's gateway merchant identifier.
-     *
-     * <p>The Google Pay API response will return an encrypted payment method capable of being charged
-     * by a supported gateway after payer authorization.
+     * Builds the PaymentDataRequest of the price in the background, call it as soon as the price is known (and again
+     * when it changes) so {@link #requestPayment} only has to start the payment sheet
      *
-     * @return Payment data tokenization for the CARD payment method.
-     * @throws JSONException
-     * @see <a href=
-     * "https://developers.google.com/pay/api/android/reference/object#PaymentMethodTokenizationSpecification">PaymentMethodTokenizationSpecification</a>
+     * @param microsPrice price in micros, as later passed to requestPayment
      */
-    private static JSONObject getGatewayTokenizationSpecification() throws JSONException {
-        return new JSONObject() {{
-               /*
-            For CARD payment method, use PAYMENT_GATEWAY or DIRECT. For PAYPAL PaymentMethod, use DIRECT with no parameter.
-            https://developers.google.com/pay/api/android/reference/request-objects#gateway
-             */
-            put("type", "PAYMENT_GATEWAY");
-            put("parameters", new JSONObject() {
-                {
-                    put("gateway", "example");
-                    put("gatewayMerchantId", "exampleGatewayMerchantId");
-                }
-            });
-        }};
+    public void prepareRequest(long microsPrice) {
+        preparedRequests.prepare(microsPrice, config);
     }
 
-
     /**
-     * 3. Define supported payment card networks
-     * <p>
-     * Card networks supported by your app and your gateway.
-     *
-     * <p>TODO: Confirm card networks supported by your app and gateway & update in Constants.java.
+     * Builds JSON, keep it off the main thread (checked by {@link MainThreadGuard})
      *
-     * @return Allowed card networks
-     * @see <a
-     * href="https://developers.google.com/pay/api/android/reference/object#CardParameters">CardParameters</a>
+     * @see PaymentRequests#getIsReadyToPayRequest()
      */
-    private static JSONArray getAllowedCardNetworks() {
-        //return new JSONArray(Constants.SUPPORTED_NETWORKS); //move to constants? final String[] = new String[]{"VISA", "AMEX"}...?
-        return new JSONArray()
-                .put("AMEX")
-                .put("DISCOVER")
-                .put("INTERAC")
-                .put("JCB")
-                .put("MASTERCARD")
-                .put("VISA");
+    public static /*Optional<*/JSONObject/*>*/ getIsReadyToPayRequest() {
+        MainThreadGuard.checkNotMain("PaymentsUtil.getIsReadyToPayRequest");
+        return PaymentRequests.getIsReadyToPayRequest();
     }
 
     /**
-     * The Google Pay API may return cards on file on Google.com (PAN_ONLY) and/or a device token on an Android device authenticated with a 3-D Secure cryptogram (CRYPTOGRAM_3DS).
-     * <p>
-     * Card authentication methods supported by your app and your gateway.
-     *
-     * <p>TODO: Confirm your processor supports Android device tokens on your supported card networks
-     * and make updates in Constants.java.
+     * Builds JSON, keep it off the main thread (checked by {@link MainThreadGuard})
      *
-     * @return Allowed card authentication methods.
-     * @see <a
-     * href="https://developers.google.com/pay/api/android/reference/object#CardParameters">CardParameters</a>
+     * @see PaymentRequests#getPaymentDataRequest(String)
      */
-    private static JSONArray getAllowedCardAuthMethods() {
-        //return new JSONArray(Constants.SUPPORTED_METHODS);
-        return new JSONArray()
-                .put("PAN_ONLY")
-                .put("CRYPTOGRAM_3DS");
+    public static /*Optional<*/JSONObject/*>*/ getPaymentDataRequest(String price) {
+        MainThreadGuard.checkNotMain("PaymentsUtil.getPaymentDataRequest");
+        return PaymentRequests.getPaymentDataRequest(price);
     }
 
     /**
-     * 4. Describe your allowed payment methods
-     * <p>
-     * Describe your app's support for the CARD payment method.
-     *
-     * <p>The provided properties are applicable to both an IsReadyToPayRequest and a
-     * PaymentDataRequest.
+     * Serialized PaymentDataRequest of the {@link PaymentConfig#DEFAULT} merchant, only the price is spliced in per
+     * call. Builds JSON the first time, keep it off the main thread (checked by {@link MainThreadGuard})
      *
-     * @return A CARD PaymentMethod object describing accepted cards.
-     * @throws JSONException
-     * @see <a
-     * href="https://developers.google.com/pay/api/android/reference/object#PaymentMethod">PaymentMethod</a>
+     * @see PaymentRequestTemplate#render(String)
      */
-    private static JSONObject getBaseCardPaymentMethod() throws JSONException {
-        JSONObject cardPaymentMethod = new JSONObject();
-        cardPaymentMethod.put("type", "CARD");
-
-        JSONObject parameters = new JSONObject();
-        parameters.put("allowedAuthMethods", getAllowedCardAuthMethods());
-        parameters.put("allowedCardNetworks", getAllowedCardNetworks());
-        // Optionally, you can add billing address/phone number associated with a CARD payment method.
-        parameters.put("billingAddressRequired", true);
-
-        JSONObject billingAddressParameters = new JSONObject();
-        billingAddressParameters.put("format", "FULL");
-
-        parameters.put("billingAddressParameters", billingAddressParameters);
+    public static String getPaymentDataRequestJson(String price) {
+        MainThreadGuard.checkNotMain("PaymentsUtil.getPaymentDataRequestJson");
+        return PaymentRequestTemplate.forConfig(PaymentConfig.DEFAULT).render(price);
+    }
 
-        cardPaymentMethod.put("parameters", parameters);
+    /**
+     * @see PaymentRequests#microsToString(long)
+     */
+    public static String microsToString(long micros) {
+        return PaymentRequests.microsToString(micros);
+    }
 
-        return cardPaymentMethod;
+    /**
+     * @see PaymentRequests#microsToBigDecimal(long)
+     */
+    public static BigDecimal microsToBigDecimal(long micros) {
+        return PaymentRequests.microsToBigDecimal(micros);
     }
 
     /**
@@ -207,145 +176,40 @@ public class PaymentsUtil {
         return Wallet.getPaymentsClient(activity, walletOptions);
     }
 
-    /**
-     * Describe the expected returned payment data for the CARD payment method
-     *
-     * @return A CARD PaymentMethod describing accepted cards and optional fields.
-     * @throws JSONException
-     * @see <a
-     * href="https://developers.google.com/pay/api/android/reference/object#PaymentMethod">PaymentMethod</a>
-     */
-    private static JSONObject getCardPaymentMethod() throws JSONException {
-        JSONObject cardPaymentMethod = getBaseCardPaymentMethod();
-        cardPaymentMethod.put("tokenizationSpecification", getGatewayTokenizationSpecification());
-
-        return cardPaymentMethod;
-    }
-
-    /**
-     * 6. Determine readiness to pay with the Google Pay API, part "getIsReadyToPayRequest"
-     * <p>
-     * An object describing accepted forms of payment by your app, used to determine a viewer's
-     * readiness to pay.
-     *
-     * @return API version and payment methods supported by the app.
-     * @see <a
-     * href="https://developers.google.com/pay/api/android/reference/object#IsReadyToPayRequest">IsReadyToPayRequest</a>
-     */
-    public static /*Optional<*/JSONObject/*>*/ getIsReadyToPayRequest() {
-        try {
-            JSONObject isReadyToPayRequest = getBaseRequest();
-            isReadyToPayRequest.put(
-                    "allowedPaymentMethods", new JSONArray().put(getBaseCardPaymentMethod()));
-
-            return isReadyToPayRequest; //Optional.of(isReadyToPayRequest); // API 24
-        } catch (JSONException e) {
-            return null; //Optional.empty(); //API 24
-        }
-    }
-
-
     /**
      * 6. Determine readiness to pay with the Google Pay API
      * display the Google Pay button, call the isReadyToPay API to determine if the user can make payments with the Google Pay API.
-     */
-    public void possiblyShowGooglePayButton(OnCompleteListener<Boolean> onCompleteListener) {
-        final JSONObject isReadyToPayJson = getIsReadyToPayRequest();
-        if (isReadyToPayJson == null) {
-            return;
-        }
-        IsReadyToPayRequest request = IsReadyToPayRequest.fromJson(isReadyToPayJson.toString());
-        if (request == null) {
-            return;
-        }
-
-        // The call to isReadyToPay is asynchronous and returns a Task. We need to provide an
-        // OnCompleteListener to be triggered when the result of the call is known.
-        Task<Boolean> task = paymentsClient.isReadyToPay(request);
-        task.addOnCompleteListener(onCompleteListener);
-    }
-
-    /**
-     * Provide Google Pay API with a payment amount, currency, and amount status.
-     * Important: European Economic Area (EEA) merchants must pass in countryCode, totalPrice, totalPriceStatus and merchantName parameters to meet SCA requirements.
-     *
-     * @return information about the requested payment.
-     * @throws JSONException
-     * @see <a
-     * href="https://developers.google.com/pay/api/android/reference/object#TransactionInfo">TransactionInfo</a>
-     */
-    private static JSONObject getTransactionInfo(String price) throws JSONException {
-        JSONObject transactionInfo = new JSONObject();
-        transactionInfo.put("totalPrice", price);
-        transactionInfo.put("totalPriceStatus", "FINAL");
-        transactionInfo.put("countryCode", "LT");
-        transactionInfo.put("currencyCode", "EUR");
-
-        return transactionInfo;
-    }
-
-    /**
-     * Information about the merchant requesting payment information
-     * Provide a user-visible merchant name
-     *
-     * @return Information about the merchant.
-     * @throws JSONException
-     * @see <a
-     * href="https://developers.google.com/pay/api/android/reference/object#MerchantInfo">MerchantInfo</a>
-     */
-    private static JSONObject getMerchantInfo() throws JSONException {
-        return new JSONObject().put("merchantName", "Example Merchant");
-    }
-
-    /**
-     * 7.Create a PaymentDataRequest object
-     * An object describing information requested in a Google Pay payment sheet
-     *
-     * @return Payment data expected by your app.
-     * @see <a
-     * href="https://developers.google.com/pay/api/android/reference/object#PaymentDataRequest">PaymentDataRequest</a>
-     */
-    public static /*Optional<*/JSONObject/*>*/ getPaymentDataRequest(String price) {
-        try {
-            JSONObject paymentDataRequest = getBaseRequest();
-            paymentDataRequest.put("allowedPaymentMethods", new JSONArray().put(getCardPaymentMethod()));
-            paymentDataRequest.put("transactionInfo", getTransactionInfo(price));
-            paymentDataRequest.put("merchantInfo", getMerchantInfo());
-
-            /* An optional shipping address requirement is a top-level property of the PaymentDataRequest
-            JSON object. */
-            /*paymentDataRequest.put("shippingAddressRequired", true);
-
-            JSONObject shippingAddressParameters = new JSONObject();
-            shippingAddressParameters.put("phoneNumberRequired", false);
-
-            JSONArray allowedCountryCodes = new JSONArray(Constants.SHIPPING_SUPPORTED_COUNTRIES);
-
-            shippingAddressParameters.put("allowedCountryCodes", allowedCountryCodes);
-            paymentDataRequest.put("shippingAddressParameters", shippingAddressParameters);*/
-            return /*Optional.of(*/paymentDataRequest/*)*/;
-        } catch (JSONException e) {
-            return /*Optional.empty()*/ null;
-        }
-    }
-
-    /**
-     * Converts micros to a string format accepted by {@link PaymentsUtil#getPaymentDataRequest}.
+     * <p>
+     * The last answer comes first from the cache, so a warm start shows the button without waiting for Google Play
+     * services. isReadyToPay is still asked every time, its answer is stored and emitted only if it differs from the
+     * cached one.
      *
-     * @param micros value of the price.
+     * @param cache answers of earlier starts
+     * @return whether to show the Google Pay button, on the main thread, consecutive answers always different
      */
-    public static String microsToString(long micros) {
-        return microsToBigDecimal(micros).toString();
+    public Observable<Boolean> isReadyToPay(ReadyToPayCache cache) {
+        PaymentConfig current = config;
+        return Single.fromCallable(() -> new GooglePayRequestBuilder().config(current).isReadyToPayRequest())
+                .subscribeOn(Schedulers.io())
+                .flatMapObservable(request -> ReadyToPayCache.cachedThenFresh(
+                        Maybe.fromCallable(() -> cache.load(request)).subscribeOn(Schedulers.io()),
+                        askReadyToPay(request)
+                                .doOnSuccess(ready -> cache.save(request, ready))
+                                .doOnError(throwable -> Log.w(TAG, "isReadyToPay failed", throwable))))
+                .observeOn(AndroidSchedulers.mainThread());
     }
 
-    /**
-     * Converts micros to a big decimal format
-     *
-     * @param micros
-     * @return
-     */
-    public static BigDecimal microsToBigDecimal(long micros) {
-        return new BigDecimal(micros).divide(MICROS).setScale(2, RoundingMode.HALF_EVEN);
+    private Single<Boolean> askReadyToPay(String request) {
+        return Single.<Boolean>create(emitter -> paymentsClient.isReadyToPay(IsReadyToPayRequest.fromJson(request))
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        emitter.onSuccess(task.getResult());
+                    } else {
+                        emitter.tryOnError(task.getException() != null ? task.getException()
+                                : new IllegalStateException("isReadyToPay failed"));
+                    }
+                }))
+                .subscribeOn(AndroidSchedulers.mainThread());//the Task is started on the main thread as before
     }
 
     /**
@@ -355,9 +219,10 @@ public class PaymentsUtil {
      * @param view
      * @param activity
      * @param microsPrice //@param mShippingCost
+     * @return see {@link #requestPayment(View, Activity, long, int)}
      */
-    public void requestPayment(View view, Activity activity, long microsPrice/*, long mShippingCost*/) {
-        requestPayment(view, activity, microsPrice, LOAD_PAYMENT_DATA_REQUEST_CODE);
+    public Disposable requestPayment(View view, Activity activity, long microsPrice/*, long mShippingCost*/) {
+        return requestPayment(view, activity, microsPrice, LOAD_PAYMENT_DATA_REQUEST_CODE);
     }
 
     /**
@@ -368,29 +233,36 @@ public class PaymentsUtil {
      * @param activity
      * @param microsPrice //@param mShippingCost
      * @param requestCode custom request code
+     * @return the request still being built (dispose it with the activity, the payment sheet is then not started),
+     * already disposed when the prepared request was used
      */
-    public void requestPayment(View view, Activity activity, long microsPrice, int requestCode/*, long mShippingCost*/) {
+    public Disposable requestPayment(View view, Activity activity, long microsPrice, int requestCode/*, long mShippingCost*/) {
         // Disables the button to prevent multiple clicks.
         view.setClickable(false);
 
         // The price provided to the API should include taxes and shipping.
         // This price is not displayed to the user.
-        String price = microsToString(microsPrice/* + mShippingCost*/);
-
-        // TransactionInfo transaction = PaymentsUtil.createTransaction(price);
-        /*Optional<*/
-        JSONObject/*>*/ paymentDataRequestJson = getPaymentDataRequest(price); //Optional is for api v24
-        if (paymentDataRequestJson == null/*!paymentDataRequestJson.isPresent()*/) {
-            return;
+        PaymentConfig config = this.config;
+        PaymentDataRequest prepared = preparedRequests.peek(microsPrice/* + mShippingCost*/, config);
+        if (prepared != null) {
+            // built by prepareRequest, only the payment sheet is left
+            AutoResolveHelper.resolveTask(paymentsClient.loadPaymentData(prepared), activity, requestCode);
+            return Disposables.disposed();
         }
-        PaymentDataRequest request = PaymentDataRequest.fromJson(paymentDataRequestJson/*.get()*/.toString());
 
-        // Since loadPaymentData may show the UI asking the user to select a payment method, we use
-        // AutoResolveHelper to wait for the user interacting with it. Once completed,
-        // onActivityResult will be called with the result.
-        if (request != null) {
-            AutoResolveHelper.resolveTask(paymentsClient.loadPaymentData(request), activity, requestCode);
-        }
+        // not prepared (or still being built): the request is built in the background, the payment sheet is
+        // started back on the main thread
+        return preparedRequests.get(microsPrice/* + mShippingCost*/, config)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(request -> {
+                    // Since loadPaymentData may show the UI asking the user to select a payment method, we use
+                    // AutoResolveHelper to wait for the user interacting with it. Once completed,
+                    // onActivityResult will be called with the result.
+                    AutoResolveHelper.resolveTask(paymentsClient.loadPaymentData(request), activity, requestCode);
+                }, throwable -> {
+                    Log.e("requestPayment", "Error: " + throwable);
+                    view.setClickable(true);
+                });
     }
 
 
@@ -402,15 +274,57 @@ public class PaymentsUtil {
      * @param resultCode
      * @param data
      * @param mGooglePayButton
+     * @param puListener called on the main thread once the payment has its token and time
+     * @return the completion started for a successful payment (dispose it with the activity), null otherwise
      */
-    public void onActivityResult(int requestCode, int resultCode, Intent data, View mGooglePayButton, SNTPClient.Listener sntpListener, PUListener puListener) {
+    public Disposable onActivityResult(int requestCode, int resultCode, Intent data, View mGooglePayButton, PUListener puListener) {
+        return onActivityResult(requestCode, resultCode, data, mGooglePayButton, TimeExecutor.mainThread(), puListener);
+    }
+
+    /**
+     * Like {@link #onActivityResult(int, int, Intent, View, PUListener)} but the listener is called on the given
+     * executor
+     *
+     * @param callbackExecutor executor calling the listener
+     */
+    public Disposable onActivityResult(int requestCode, int resultCode, Intent data, View mGooglePayButton, Executor callbackExecutor, PUListener puListener) {
+        Single<PaymentCompletion> completion = completion(requestCode, resultCode, data, mGooglePayButton, callbackExecutor);
+        if (completion == null) {
+            return null;
+        }
+        return completion.subscribe(puListener::onSuccess,//yay, we did it right, returning the callback
+                throwable -> Log.e("handlePaymentSuccess", "Error: " + throwable.toString()));
+    }
+
+    /**
+     * Like {@link #onActivityResult(int, int, Intent, View, PUListener)} but the completion is handed to the app wide
+     * {@link PaymentCompletions}, so it isn't lost when the activity is recreated: the listener attached there gets it
+     *
+     * @param completions where the completion runs and waits for a listener, {@link PaymentCompletions#getInstance()}
+     * @return true if a successful payment is being completed
+     */
+    public boolean onActivityResult(int requestCode, int resultCode, Intent data, View mGooglePayButton, PaymentCompletions completions) {
+        // PaymentCompletions hops to the main thread itself
+        Single<PaymentCompletion> completion = completion(requestCode, resultCode, data, mGooglePayButton, TimeExecutor.direct());
+        if (completion == null) {
+            return false;
+        }
+        completions.track(completion);
+        return true;
+    }
+
+    /**
+     * @return the completion of a successful payment, cold, null for any other result
+     */
+    private Single<PaymentCompletion> completion(int requestCode, int resultCode, Intent data, View mGooglePayButton, Executor callbackExecutor) {
+        Single<PaymentCompletion> completion = null;
         //switch (requestCode) {
         // value passed in AutoResolveHelper
         //case LOAD_PAYMENT_DATA_REQUEST_CODE:
         switch (resultCode) {
             case Activity.RESULT_OK:
                 PaymentData paymentData = PaymentData.getFromIntent(data);
-                handlePaymentSuccess(requestCode, paymentData, mGooglePayButton.getContext(), sntpListener, puListener);
+                completion = handlePaymentSuccess(requestCode, paymentData, callbackExecutor);
                 break;
             case Activity.RESULT_CANCELED:
                 // Nothing to here normally - the user simply cancelled without selecting a
@@ -429,6 +343,7 @@ public class PaymentsUtil {
         //System.out.println("onActivityResult: enabling back the mGooglePayButton=" + mGooglePayButton);
         // break;
         //}
+        return completion;
     }
 
     /**
@@ -439,36 +354,59 @@ public class PaymentsUtil {
      * @see <a
      * href="https://developers.google.com/pay/api/android/reference/object#PaymentData">Payment
      * Data</a>
+     * @return the completion, cold, null if there was no payment information
      */
-    private void handlePaymentSuccess(int requestCode, PaymentData paymentData, Context context, SNTPClient.Listener sntpListener, PUListener puListener) {
+    private Single<PaymentCompletion> handlePaymentSuccess(int requestCode, PaymentData paymentData, Executor callbackExecutor) {
         String paymentInformation = paymentData.toJson();
 
         // Token will be null if PaymentDataRequest was not constructed using fromJson(String).
         if (paymentInformation == null) {
-            return;
+            return null;
         }
 
+        // the token is read in the background while the time is being fetched, the listener gets both at once
+        Single<PaymentMethodData> token = Single.fromCallable(() -> {
+            PaymentMethodData paymentMethodData = parsePaymentMethodData(paymentInformation);
+            Log.d("BillingName", String.valueOf(paymentMethodData.getBillingName()));
+
+            // Logging token string.
+            Log.d("GooglePaymentToken", paymentMethodData.getToken());
+            return paymentMethodData;
+        }).subscribeOn(Schedulers.computation());
+
+        Single<NtpSample> sample;
         if (requestCode == LOAD_PAYMENT_DATA_REQUEST_CODE)
-            SNTPClient.getDate("time.google.com", sntpListener);//we get date from google in a way that doesn't cause ANR
+            sample = NetworkClock.getInstance().requestSample();//cached network time, or the server pool
         else
-            SNTPClient.getDateANR("time.google.com", sntpListener);//we get date from google in a way that causes ANR
+            sample = SntpRx.sample("time.google.com");//the server the ANR button used to block on, asked in the background now
+        Single<PaymentCompletion.Time> time =
+                sample.map(ntpSample -> new PaymentCompletion.Time(ntpSample.now(), PaymentCompletion.TimeSource.NETWORK));
 
-        JSONObject paymentMethodData;
-        try {
-            paymentMethodData = new JSONObject(paymentInformation).getJSONObject("paymentMethodData");
-            puListener.onSuccess(paymentMethodData);//yay, we did it right, returning the callback
-
-            String billingName =
-                    paymentMethodData.getJSONObject("info").getJSONObject("billingAddress").getString("name");
-            Log.d("BillingName", billingName);
-            Toast.makeText(context, billingName, Toast.LENGTH_LONG).show();
+        return PaymentCompletion.complete(token, time, PaymentsUtil::fallbackTime,
+                PaymentCompletion.DEFAULT_DEADLINE, TimeExecutor.scheduler(), callbackExecutor);
+    }
 
-            // Logging token string.
-            Log.d("GooglePaymentToken", paymentMethodData.getJSONObject("tokenizationData").getString("token"));
-        } catch (JSONException e) {
-            Log.e("handlePaymentSuccess", "Error: " + e.toString());
-            //return;
+    /**
+     * @return the background sync estimate, or the device clock when there is none yet
+     */
+    private static PaymentCompletion.Time fallbackTime() {
+        ClockDriftEstimator.Estimate estimate = TimeSyncScheduler.getInstance().getEstimate();
+        if (estimate != null) {
+            return new PaymentCompletion.Time(estimate.now(), PaymentCompletion.TimeSource.ESTIMATE);
         }
+        return new PaymentCompletion.Time(System.currentTimeMillis(), PaymentCompletion.TimeSource.DEVICE);
+    }
+
+    /**
+     * Reads PaymentData JSON, keep it off the main thread (checked by {@link MainThreadGuard})
+     *
+     * @param paymentInformation PaymentData.toJson()
+     * @return the token and billing name of the paymentMethodData
+     * @throws JSONException
+     */
+    static PaymentMethodData parsePaymentMethodData(String paymentInformation) throws JSONException {
+        MainThreadGuard.checkNotMain("PaymentsUtil.parsePaymentMethodData");
+        return PaymentMethodData.parse(paymentInformation);
     }
 
     /**
@@ -477,15 +415,9 @@ public class PaymentsUtil {
      * If the gateway is set to "example", no payment information is returned - instead, the
      * token will only consist of "examplePaymentMethodToken".
      */
-    public void handleTestPayment(JSONObject paymentMethodData, Context context) throws JSONException {
-        if (paymentMethodData
-                .getJSONObject("tokenizationData")
-                .getString("type")
-                .equals("PAYMENT_GATEWAY")
-                && paymentMethodData
-                .getJSONObject("tokenizationData")
-                .getString("token")
-                .equals("examplePaymentMethodToken")) {
+    public void handleTestPayment(PaymentMethodData paymentMethodData, Context context) {
+        if (paymentMethodData.getTokenizationType().equals("PAYMENT_GATEWAY")
+                && paymentMethodData.getToken().equals("examplePaymentMethodToken")) {
             AlertDialog alertDialog =
                     new AlertDialog.Builder(context)
                             .setTitle("Warning")
@@ -0,0 +1,165 @@
+package lt.myapp.myapp.Payment;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import lt.myapp.myapp.sys.Watchdog.MainThreadGuard;
+
+/**
+ * Keeps the last isReadyToPay answer in a small fixed size file, so a warm start shows the right button after a file
+ * read instead of waiting for Google Play services.
+ * <p>
+ * The answer is keyed by the IsReadyToPayRequest JSON it was given for: another config, card network list or auth
+ * method list is another question and misses the cache. It expires after the ttl, and a wall clock that moved back
+ * before the save expires it too.
+ * <p>
+ * Record layout (big endian, {@value #RECORD_SIZE} bytes):
+ * magic, version, wall clock of the save, answer, sha-256 of the request, crc32 of everything before it.
+ */
+public final class ReadyToPayCache {
+
+    public static final long DEFAULT_TTL = 24 * 60 * 60 * 1000L;//ms
+
+    static final int RECORD_SIZE = 53;
+    private static final int MAGIC = 0x52545043;//"RTPC"
+    private static final int VERSION = 1;
+    private static final int KEY_SIZE = 32;
+    private static final int CRC_OFFSET = 49;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final long ttl;
+    private final Scheduler io;
+
+    /**
+     * @param file where the record is kept, usually in context.getFilesDir()
+     * @param ttl  milliseconds an answer is trusted, {@link #DEFAULT_TTL}
+     * @param io   where {@link #save} writes, Schedulers.io() in the app
+     */
+    public ReadyToPayCache(File file, long ttl, Scheduler io) {
+        this.file = file;
+        this.ttl = ttl;
+        this.io = io;
+    }
+
+    /**
+     * Reads the stored answer, blocking: call it off the main thread.
+     *
+     * @param request IsReadyToPayRequest JSON
+     * @return the answer stored for this request, null if there is none, it's expired or damaged
+     */
+    public Boolean load(String request) {
+        MainThreadGuard.checkNotMain("ReadyToPayCache.load");
+        byte[] record = new byte[RECORD_SIZE];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.readFully(record);
+        } catch (IOException e) {
+            return null;//nothing stored yet
+        }
+        return decode(record, request, System.currentTimeMillis(), ttl);
+    }
+
+    /**
+     * Queues the answer to be written on the io scheduler, never blocks the caller.
+     */
+    public void save(String request, boolean ready) {
+        long now = System.currentTimeMillis();
+        io.scheduleDirect(() -> write(encode(request, ready, now)));
+    }
+
+    private synchronized void write(byte[] record) {
+        // fixed size record overwritten in place, the crc catches torn writes
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(0);
+            raf.write(record);
+            raf.setLength(RECORD_SIZE);
+        } catch (IOException e) {
+            Log.w("ReadyToPayCache", "storing isReadyToPay answer failed", e);
+        }
+    }
+
+    /**
+     * The cached answer right away, then the fresh one if it differs.
+     * <p>
+     * Both are subscribed at once, the cached one is always emitted first. When the fresh one fails the cached answer
+     * stays, without a cached one the answer is false.
+     *
+     * @param cached stored answer, empty if there is none
+     * @param fresh  the isReadyToPay call
+     * @return one or two answers, consecutive ones always different
+     */
+    @SuppressWarnings("unchecked")//generic varargs of concatArrayEager
+    static Observable<Boolean> cachedThenFresh(Maybe<Boolean> cached, Single<Boolean> fresh) {
+        Maybe<Boolean> known = cached.onErrorComplete().cache();
+        Observable<Boolean> revalidated = fresh.toObservable()
+                .onErrorResumeNext(known.isEmpty()
+                        .flatMapObservable(none -> none ? Observable.just(false) : Observable.<Boolean>empty()));
+        return Observable.concatArrayEager(known.toObservable(), revalidated)
+                .distinctUntilChanged();
+    }
+
+    static byte[] encode(String request, boolean ready, long savedAt) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(savedAt);
+        buffer.put((byte) (ready ? 1 : 0));
+        buffer.put(key(request));
+        buffer.putInt(crc(buffer.array()));
+        return buffer.array();
+    }
+
+    /**
+     * @param record  stored bytes
+     * @param request IsReadyToPayRequest JSON asked now
+     * @param now     System.currentTimeMillis() now
+     * @param ttl     milliseconds an answer is trusted
+     * @return the stored answer, null if it's damaged, expired or for another request
+     */
+    static Boolean decode(byte[] record, String request, long now, long ttl) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        long savedAt = buffer.getLong();
+        byte ready = buffer.get();
+        byte[] key = new byte[KEY_SIZE];
+        buffer.get(key);
+        if (buffer.getInt() != crc(record)) {
+            return null;
+        }
+
+        long age = now - savedAt;
+        if (age < 0 || age > ttl || !Arrays.equals(key, key(request))) {
+            return null;
+        }
+        return ready == 1;
+    }
+
+    private static byte[] key(String request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(request.getBytes(UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);//every Android and JVM has it
+        }
+    }
+
+    private static int crc(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, CRC_OFFSET);
+        return (int) crc.getValue();
+    }
+}
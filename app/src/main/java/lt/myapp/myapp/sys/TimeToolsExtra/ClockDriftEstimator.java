@@ -0,0 +1,178 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+/**
+ * Fits the drift of SystemClock.elapsedRealtime() against network time from a window of {@link NtpSample}s.
+ * <p>
+ * Every sample gives y = ntpTime - ntpTimeReference, which would stay constant if the local clock ran at exactly the right rate.
+ * A weighted least squares line y = intercept + drift * (ticks - reference) is fitted through the window, samples with
+ * short round trips weigh more as their offsets are the most trustworthy.
+ * The fit is published as an immutable {@link Estimate}, so reading it never blocks.
+ */
+public final class ClockDriftEstimator {
+
+    public static final int DEFAULT_CAPACITY = 16;
+    // a quartz clock off by more than this is broken rather than drifting, so clamp the fit
+    private static final double MAX_DRIFT = 500e-6;
+
+    /**
+     * Immutable fit of the clock, extrapolates network time without the network
+     */
+    public static final class Estimate {
+        private final long reference;
+        private final double intercept;
+        private final double drift;
+        private final double uncertainty;
+        private final double driftUncertainty;
+        private final int samples;
+
+        Estimate(long reference, double intercept, double drift, double uncertainty, double driftUncertainty, int samples) {
+            this.reference = reference;
+            this.intercept = intercept;
+            this.drift = drift;
+            this.uncertainty = uncertainty;
+            this.driftUncertainty = driftUncertainty;
+            this.samples = samples;
+        }
+
+        /**
+         * @param ticks SystemClock.elapsedRealtime() value
+         * @return network time at the given ticks
+         */
+        public long timeAt(long ticks) {
+            return ticks + Math.round(intercept + drift * (ticks - reference));
+        }
+
+        /**
+         * @param ticks SystemClock.elapsedRealtime() value
+         * @return error bound in milliseconds of {@link #timeAt(long)}, grows with the distance from the last sample
+         */
+        public long uncertaintyAt(long ticks) {
+            return (long) Math.ceil(uncertainty + driftUncertainty * Math.abs(ticks - reference));
+        }
+
+        /**
+         * @return network time right now
+         */
+        public long now() {
+            return timeAt(Ticks.elapsedRealtime());
+        }
+
+        /**
+         * @return current error bound in milliseconds
+         */
+        public long getUncertainty() {
+            return uncertaintyAt(Ticks.elapsedRealtime());
+        }
+
+        /**
+         * @return network time minus the device wall clock right now, in milliseconds
+         */
+        public long getOffset() {
+            return now() - System.currentTimeMillis();
+        }
+
+        /**
+         * @return how fast elapsedRealtime runs against network time, in parts per million (positive means it runs slow)
+         */
+        public double getDriftPpm() {
+            return drift * 1e6;
+        }
+
+        /**
+         * @return number of samples behind the fit
+         */
+        public int getSamples() {
+            return samples;
+        }
+
+        @Override
+        public String toString() {
+            return "Estimate{samples=" + samples + ", drift=" + getDriftPpm() + "ppm, uncertainty=" + uncertainty + "ms}";
+        }
+    }
+
+    private final long[] ticks;
+    private final double[] offsets;
+    private final long[] roundTrips;
+    private int count;
+    private int head;
+    private volatile Estimate estimate;
+
+    public ClockDriftEstimator() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of most recent samples used for the fit
+     */
+    public ClockDriftEstimator(int capacity) {
+        ticks = new long[capacity];
+        offsets = new double[capacity];
+        roundTrips = new long[capacity];
+    }
+
+    /**
+     * @return latest fit or null before the first sample
+     */
+    public Estimate getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * Adds a sample to the window and refits the clock
+     *
+     * @return the new estimate
+     */
+    public synchronized Estimate add(NtpSample sample) {
+        ticks[head] = sample.getNtpTimeReference();
+        offsets[head] = sample.getNtpTime() - sample.getNtpTimeReference();
+        roundTrips[head] = Math.max(0, sample.getRoundTripTime());
+        head = (head + 1) % ticks.length;
+        if (count < ticks.length) {
+            count++;
+        }
+        estimate = fit(sample.getNtpTimeReference());
+        return estimate;
+    }
+
+    private Estimate fit(long reference) {
+        double sumW = 0, sumX = 0, sumY = 0;
+        long bestRoundTrip = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            double w = weight(roundTrips[i]);
+            sumW += w;
+            sumX += w * (ticks[i] - reference);
+            sumY += w * offsets[i];
+            bestRoundTrip = Math.min(bestRoundTrip, roundTrips[i]);
+        }
+        double meanX = sumX / sumW;
+        double meanY = sumY / sumW;
+
+        double sxx = 0, sxy = 0;
+        for (int i = 0; i < count; i++) {
+            double w = weight(roundTrips[i]);
+            double dx = ticks[i] - reference - meanX;
+            sxx += w * dx * dx;
+            sxy += w * dx * (offsets[i] - meanY);
+        }
+        double drift = sxx > 0 ? sxy / sxx : 0;
+        drift = Math.max(-MAX_DRIFT, Math.min(MAX_DRIFT, drift));
+        double intercept = meanY - drift * meanX;
+
+        double residuals = 0;
+        for (int i = 0; i < count; i++) {
+            double r = offsets[i] - (intercept + drift * (ticks[i] - reference));
+            residuals += weight(roundTrips[i]) * r * r;
+        }
+        double sigma = Math.sqrt(residuals / sumW);
+        // a single offset can't be better than half the round trip it was measured over
+        double uncertainty = Math.max(bestRoundTrip / 2.0, sigma) + 1;
+        double driftUncertainty = sxx > 0 && count > 2 ? sigma / Math.sqrt(sxx / sumW) / Math.sqrt(count - 2) : MAX_DRIFT;
+        return new Estimate(reference, intercept, drift, uncertainty, Math.min(MAX_DRIFT, driftUncertainty), count);
+    }
+
+    private static double weight(long roundTrip) {
+        double halfTrip = roundTrip / 2.0 + 1;
+        return 1 / (halfTrip * halfTrip);
+    }
+}
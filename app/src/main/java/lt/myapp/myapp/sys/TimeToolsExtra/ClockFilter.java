@@ -0,0 +1,90 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.util.List;
+
+/**
+ * Minimum delay clock filter in the style of RFC 5905 section 10.
+ * <p>
+ * Keeps the last {@link #STAGES} samples of one server. The sample with the smallest synchronization distance
+ * (half its round trip plus dispersion growing with its age) is the best one: a short round trip leaves little
+ * room for asymmetric queueing delay, so its offset is the most accurate.
+ */
+public final class ClockFilter {
+
+    public static final int STAGES = 8;
+    // frequency tolerance of the local clock, 15 ppm as in RFC 5905
+    private static final double PHI = 15e-6;
+
+    private final NtpSample[] stages = new NtpSample[STAGES];
+    private int count;
+    private int head;
+    private long latestReference = Long.MIN_VALUE;
+
+    /**
+     * Shifts the sample into the filter, the oldest one falls out
+     */
+    public synchronized void add(NtpSample sample) {
+        stages[head] = sample;
+        head = (head + 1) % STAGES;
+        if (count < STAGES) {
+            count++;
+        }
+        latestReference = Math.max(latestReference, sample.getNtpTimeReference());
+    }
+
+    /**
+     * @return number of samples in the filter
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return sample with the smallest synchronization distance or null if the filter is empty
+     */
+    public synchronized NtpSample best() {
+        NtpSample best = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            double distance = distance(stages[i]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = stages[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return root mean square of the offset differences from the best sample in milliseconds, 0 for less than two samples
+     */
+    public synchronized double jitter() {
+        NtpSample best = best();
+        if (count < 2) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            double difference = stages[i].getClockOffset() - best.getClockOffset();
+            sum += difference * difference;
+        }
+        return Math.sqrt(sum / (count - 1));
+    }
+
+    /**
+     * Runs the samples of one burst through a fresh filter
+     *
+     * @return the best sample or null if there are none
+     */
+    public static NtpSample select(List<NtpSample> samples) {
+        ClockFilter filter = new ClockFilter();
+        for (NtpSample sample : samples) {
+            filter.add(sample);
+        }
+        return filter.best();
+    }
+
+    private double distance(NtpSample sample) {
+        return Math.max(0, sample.getRoundTripTime()) / 2.0 + PHI * (latestReference - sample.getNtpTimeReference());
+    }
+}
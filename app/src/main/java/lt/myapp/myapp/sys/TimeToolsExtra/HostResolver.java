@@ -0,0 +1,162 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import android.util.Log;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DNS cache for SNTP host names.
+ * <p>
+ * Successful lookups are kept for {@link #DEFAULT_TTL}, failures for {@link #DEFAULT_NEGATIVE_TTL} so a dead name
+ * doesn't cost a blocking lookup per request. Prewarmed hosts are re-resolved in the background shortly before
+ * they expire, so requests to them never wait on DNS after startup.
+ */
+public final class HostResolver {
+
+    public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_NEGATIVE_TTL = TimeUnit.SECONDS.toMillis(30);
+    // background refresh starts this long before a prewarmed entry expires, at most half its ttl
+    private static final long REFRESH_AHEAD = TimeUnit.SECONDS.toMillis(20);
+
+    /**
+     * Blocking name lookup, swapped out in tests
+     */
+    interface Lookup {
+        InetAddress lookup(String host) throws UnknownHostException;
+    }
+
+    private static final class Entry {
+        final InetAddress address;
+        final UnknownHostException error;
+        // the lookup failed, address is the one kept from the last success
+        final boolean stale;
+        final long expiresAt;//System.nanoTime() based
+
+        Entry(InetAddress address, UnknownHostException error, boolean stale, long expiresAt) {
+            this.address = address;
+            this.error = error;
+            this.stale = stale;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    static final HostResolver SYSTEM = new HostResolver(InetAddress::getByName, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+
+    private static volatile HostResolver sInstance = SYSTEM;
+
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    // hosts kept warm in the background, value is unused
+    private final ConcurrentHashMap<String, Boolean> warm = new ConcurrentHashMap<>();
+    // duration of the last real lookup per host in milliseconds
+    private final ConcurrentHashMap<String, Long> lookupTimes = new ConcurrentHashMap<>();
+    private final Lookup lookup;
+    private final long ttl;
+    private final long negativeTtl;
+    private final long refreshAhead;
+
+    HostResolver(Lookup lookup, long ttl, long negativeTtl) {
+        this.lookup = lookup;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.refreshAhead = Math.min(REFRESH_AHEAD, ttl / 2);
+    }
+
+    public static HostResolver getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * @param resolver resolver every later request uses, {@link #SYSTEM} outside of tests
+     */
+    static void setInstance(HostResolver resolver) {
+        sInstance = resolver;
+    }
+
+    /**
+     * Returns the cached address of the host, looks it up (blocking) on a miss
+     *
+     * @param host host name or literal address
+     * @return the address
+     * @throws UnknownHostException if the host can't be resolved, also served from the cache for a while
+     */
+    public InetAddress resolve(String host) throws UnknownHostException {
+        Entry entry = cache.get(host);
+        if (entry == null || entry.expiresAt - System.nanoTime() <= 0) {
+            entry = refresh(host);
+        }
+        if (entry.error != null) {
+            throw new UnknownHostException(entry.error.getMessage());
+        }
+        return entry.address;
+    }
+
+    /**
+     * @return true if the host has a fresh positive entry, meaning resolve() won't block
+     */
+    public boolean isCached(String host) {
+        Entry entry = cache.get(host);
+        return entry != null && entry.error == null && entry.expiresAt - System.nanoTime() > 0;
+    }
+
+    /**
+     * @return duration of the last real lookup of the host in milliseconds, -1 if it was never looked up
+     */
+    public long getLookupTime(String host) {
+        Long time = lookupTimes.get(host);
+        return time != null ? time : -1;
+    }
+
+    /**
+     * Resolves the hosts on the time executor for blocking work and keeps re-resolving them before they expire
+     *
+     * @param hosts host names used for time requests
+     */
+    public void prewarm(List<String> hosts) {
+        for (String host : hosts) {
+            if (warm.putIfAbsent(host, Boolean.TRUE) == null) {
+                TimeExecutor.ioScheduler().scheduleDirect(() -> refreshWarm(host));
+            }
+        }
+    }
+
+    /**
+     * Forgets every entry, prewarmed hosts stay warm
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    private void refreshWarm(String host) {
+        Entry entry = refresh(host);
+        long lifetime = TimeUnit.NANOSECONDS.toMillis(entry.expiresAt - System.nanoTime());
+        // failed lookups are retried when their entry expires, only fresh answers are refreshed ahead
+        long delay = entry.error != null || entry.stale ? lifetime : lifetime - refreshAhead;
+        delay = Math.max(0, delay);
+        TimeExecutor.ioScheduler().scheduleDirect(() -> refreshWarm(host), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private Entry refresh(String host) {
+        long start = System.nanoTime();
+        Entry entry;
+        try {
+            InetAddress address = lookup.lookup(host);
+            entry = new Entry(address, null, false, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl));
+        } catch (UnknownHostException e) {
+            Entry previous = cache.get(host);
+            if (previous != null && previous.error == null && warm.containsKey(host)) {
+                // keep serving the old address for a while instead of failing a warm host on a dns hiccup
+                entry = new Entry(previous.address, null, true, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(negativeTtl));
+            } else {
+                entry = new Entry(null, e, false, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(negativeTtl));
+            }
+            Log.w(SNTPClient.TAG, "resolving " + host + " failed", e);
+        }
+        lookupTimes.put(host, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        cache.put(host, entry);
+        return entry;
+    }
+}
@@ -0,0 +1,201 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Single;
+
+/**
+ * Process wide network clock.
+ * <p>
+ * Keeps the last good {@link NtpSample} and extrapolates it with SystemClock.elapsedRealtime(),
+ * so reading the time is a volatile read plus some math: no locks and no network.
+ * The network is only touched again once the sample gets older than {@link #setMaxAge(long)}.
+ * <p>
+ * Sample usage:
+ * <pre>
+ * NetworkClock clock = NetworkClock.getInstance();
+ * clock.syncIfStale();
+ * if (clock.hasTime()) {
+ *     long now = clock.now();
+ * }
+ * </pre>
+ */
+public final class NetworkClock {
+
+    public static final long DEFAULT_MAX_AGE = 30 * 60 * 1000L;//30 min
+    private static final int SYNC_DEADLINE = 5000;//ms
+
+    private static final NetworkClock INSTANCE = new NetworkClock();
+
+    private final AtomicReference<NtpSample> sample = new AtomicReference<>();
+    private final AtomicBoolean syncing = new AtomicBoolean(false);
+    private volatile long maxAge = DEFAULT_MAX_AGE;
+    private volatile List<String> servers = SNTPClient.DEFAULT_SERVERS;
+    private volatile NtpSampleStore store;
+
+    private NetworkClock() {
+    }
+
+    public static NetworkClock getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param maxAge milliseconds after which the sample is considered stale and re-synced
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * @param servers pool of servers used when syncing
+     */
+    public void setServers(List<String> servers) {
+        this.servers = servers;
+    }
+
+    /**
+     * Attaches persistent storage: the stored sample is loaded on the {@link TimeExecutor#ioScheduler()} and every
+     * new sample gets saved.
+     * A sync is started afterwards if the stored sample is missing or stale.
+     * Only the first store is used, later calls (activity recreation) are ignored.
+     *
+     * @param store where samples are kept between process restarts
+     */
+    public synchronized void setStore(NtpSampleStore store) {
+        if (this.store != null) {
+            return;
+        }
+        this.store = store;
+        TimeExecutor.ioScheduler().scheduleDirect(() -> {
+            NtpSample stored = store.load();
+            if (stored != null) {
+                update(stored);
+            }
+            syncIfStale();
+        });
+    }
+
+    /**
+     * @return last good sample or null if we never synced
+     */
+    public NtpSample getSample() {
+        return sample.get();
+    }
+
+    /**
+     * @return true if at least one sync succeeded
+     */
+    public boolean hasTime() {
+        return sample.get() != null;
+    }
+
+    /**
+     * @return true if there is a sample younger than the max age
+     */
+    public boolean isFresh() {
+        NtpSample current = sample.get();
+        return current != null && current.getAge() <= maxAge;
+    }
+
+    /**
+     * Network time right now, falls back to the device clock until the first sync succeeds.
+     *
+     * @return milliseconds since January 1, 1970
+     */
+    public long now() {
+        NtpSample current = sample.get();
+        return current != null ? current.now() : System.currentTimeMillis();
+    }
+
+    /**
+     * Stores a new sample, older samples (by their elapsedRealtime reference) never replace newer ones.
+     *
+     * @param newSample sample from a successful transaction
+     */
+    public void update(NtpSample newSample) {
+        NtpSample current;
+        do {
+            current = sample.get();
+            if (current != null && current.getNtpTimeReference() > newSample.getNtpTimeReference()) {
+                return;
+            }
+        } while (!sample.compareAndSet(current, newSample));
+        NtpSampleStore currentStore = store;
+        if (currentStore != null) {
+            currentStore.save(newSample);
+        }
+    }
+
+    /**
+     * Starts a background sync when the sample is missing or stale, only one sync runs at a time.
+     *
+     * @return true if a sync was started by this call
+     */
+    public boolean syncIfStale() {
+        if (isFresh() || !syncing.compareAndSet(false, true)) {
+            return false;
+        }
+        SNTPClient.requestFromPool(servers, SNTPClient.PoolMode.FIRST_GOOD, SYNC_DEADLINE)
+                .doFinally(() -> syncing.set(false))
+                .subscribe(
+                        sntpClient -> update(sntpClient.getSample()),
+                        throwable -> Log.w(SNTPClient.TAG, "network clock sync failed", throwable));
+        return true;
+    }
+
+    /**
+     * Reactive {@link #getTime(SNTPClient.Listener)}: the fresh cached sample right away, otherwise one from the
+     * server pool, which also updates the clock. Not moved to any thread, see {@link SntpRx}.
+     *
+     * @return sample, errors with SocketTimeoutException if no server answered
+     */
+    public Single<NtpSample> requestSample() {
+        NtpSample current = sample.get();
+        if (current != null && current.getAge() <= maxAge) {
+            return Single.just(current);
+        }
+        return SntpRx.sample(servers, SNTPClient.PoolMode.FIRST_GOOD, SYNC_DEADLINE).doOnSuccess(this::update);
+    }
+
+    /**
+     * Delivers the network time to the listener on the main thread.
+     * <p>
+     * A fresh cached sample is answered without the network, otherwise the server pool is queried.
+     *
+     * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
+     */
+    public TimeRequest getTime(SNTPClient.Listener _listener) {
+        return getTime(TimeExecutor.mainThread(), _listener);
+    }
+
+    /**
+     * Like {@link #getTime(SNTPClient.Listener)} but the listener is called on the given executor,
+     * with {@link TimeExecutor#direct()} a cached answer is delivered before this returns.
+     *
+     * @param callbackExecutor executor calling the listener
+     * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
+     */
+    public TimeRequest getTime(Executor callbackExecutor, SNTPClient.Listener _listener) {
+        NtpSample current = sample.get();
+        if (current == null || current.getAge() > maxAge) {
+            return SNTPClient.getDate(servers, SNTPClient.PoolMode.FIRST_GOOD, SYNC_DEADLINE, callbackExecutor, _listener);
+        }
+        long requestTime = System.currentTimeMillis();
+        long serverTime = current.timeAt(Ticks.elapsedRealtime());
+        TimeRequest request = new TimeRequest(_listener, callbackExecutor, requestTime);
+        request.onTimeReceived(requestTime, serverTime, serverTime - requestTime);
+        return request;
+    }
+}
@@ -0,0 +1,141 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.security.SecureRandom;
+
+/**
+ * Encodes and decodes NTP packet fields in place, without allocating.
+ * <p>
+ * NTP time stamps are 64 bit fixed point numbers: 32 bits of seconds since January 1, 1900
+ * followed by a 32 bit fraction of a second. Both halves are big endian.
+ */
+public final class NtpCodec {
+
+    public static final int REFERENCE_TIME_OFFSET = 16;
+    public static final int ORIGINATE_TIME_OFFSET = 24;
+    public static final int RECEIVE_TIME_OFFSET = 32;
+    public static final int TRANSMIT_TIME_OFFSET = 40;
+    public static final int NTP_PACKET_SIZE = 48;
+
+    public static final int NTP_MODE_CLIENT = 3;
+    public static final int NTP_MODE_SERVER = 4;
+    public static final int NTP_VERSION = 3;
+
+    // Number of seconds between Jan 1, 1900 and Jan 1, 1970
+    // 70 years plus 17 leap days
+    public static final long OFFSET_1900_TO_1970 = ((365L * 70L) + 17L) * 24L * 60L * 60L;
+
+    // a millisecond is a little over 2^22 fraction units, 22 random bits never reach the next one
+    private static final int SUB_MILLISECOND_BITS = 22;
+    private static final SecureRandom SEED = new SecureRandom();
+    private static final ThreadLocal<long[]> NOISE = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[]{SEED.nextLong() | 1L};//xorshift state must not be 0
+        }
+    };
+
+    private NtpCodec() {
+    }
+
+    /**
+     * Reads an unsigned 32 bit big endian number from the given offset in the buffer.
+     */
+    public static long read32(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFFL) << 24)
+                | ((buffer[offset + 1] & 0xFFL) << 16)
+                | ((buffer[offset + 2] & 0xFFL) << 8)
+                | (buffer[offset + 3] & 0xFFL);
+    }
+
+    /**
+     * Writes the low 32 bits of the value in big endian format at the given offset in the buffer.
+     */
+    public static void write32(byte[] buffer, int offset, long value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Reads the raw 64 bit NTP time stamp (seconds in the high half, fraction in the low half).
+     */
+    public static long readRaw64(byte[] buffer, int offset) {
+        return (read32(buffer, offset) << 32) | read32(buffer, offset + 4);
+    }
+
+    /**
+     * Reads the NTP time stamp at the given offset in the buffer and returns
+     * it as a system time (milliseconds since January 1, 1970).
+     */
+    public static long readTimeStamp(byte[] buffer, int offset) {
+        long seconds = read32(buffer, offset);
+        long fraction = read32(buffer, offset + 4);
+        // fraction * 1000 fits in 42 bits, the shift is the division by 2^32
+        return ((seconds - OFFSET_1900_TO_1970) * 1000L) + ((fraction * 1000L) >>> 32);
+    }
+
+    /**
+     * Writes system time (milliseconds since January 1, 1970) as an NTP time stamp
+     * at the given offset in the buffer.
+     * <p>
+     * The fraction is rounded up to the millisecond and the bits below the millisecond resolution are random, so
+     * {@link #readTimeStamp(byte[], int)} gives back exactly the same millisecond while the transmit time stamp,
+     * the only thing a response is matched against, can't be predicted from the clock and differs between two
+     * requests sent in the same millisecond.
+     */
+    public static void writeTimeStamp(byte[] buffer, int offset, long time) {
+        long seconds = time / 1000L;
+        long milliseconds = time - seconds * 1000L;
+        write32(buffer, offset, seconds + OFFSET_1900_TO_1970);
+        write32(buffer, offset + 4, ((milliseconds << 32) + 999L) / 1000L + subMillisecondNoise());
+    }
+
+    /**
+     * @return 22 random bits from the calling thread's xorshift64* generator, seeded from SecureRandom so an off-path
+     * sender can't predict them, without SecureRandom's lock and allocation per packet
+     */
+    private static long subMillisecondNoise() {
+        long[] state = NOISE.get();
+        long x = state[0];
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        state[0] = x;
+        return (x * 0x2545F4914F6CDD1DL) >>> (64 - SUB_MILLISECOND_BITS);
+    }
+
+    /**
+     * Clears the buffer and writes a client request header (mode 3, version 3) with the transmit time stamp.
+     */
+    public static void writeRequest(byte[] buffer, long requestTime) {
+        for (int i = 0; i < NTP_PACKET_SIZE; i++) {
+            buffer[i] = 0;
+        }
+        // mode is in low 3 bits of first byte
+        // version is in bits 3-5 of first byte
+        buffer[0] = NTP_MODE_CLIENT | (NTP_VERSION << 3);
+        writeTimeStamp(buffer, TRANSMIT_TIME_OFFSET, requestTime);
+    }
+
+    /**
+     * @return mode of the packet, taken from the low 3 bits of the first byte
+     */
+    public static int readMode(byte[] buffer) {
+        return buffer[0] & 0x7;
+    }
+
+    /**
+     * Checks that a received packet is a server answer to the request we sent.
+     *
+     * @param buffer        received packet
+     * @param length        number of bytes received
+     * @param sentTimeStamp raw transmit time stamp of our request, see {@link #readRaw64(byte[], int)}
+     * @return true if the packet is long enough, in server mode and echoes our time stamp
+     */
+    public static boolean isResponseTo(byte[] buffer, int length, long sentTimeStamp) {
+        return length >= NTP_PACKET_SIZE
+                && readMode(buffer) == NTP_MODE_SERVER
+                && readRaw64(buffer, ORIGINATE_TIME_OFFSET) == sentTimeStamp;
+    }
+}
@@ -0,0 +1,202 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reusable socket, buffer and packets for one SNTP request/response exchange.
+ * <p>
+ * Exchanges are kept in a small fixed pool so requests don't produce garbage:
+ * <pre>
+ * NtpExchange exchange = NtpExchange.obtain();
+ * try {
+ *     exchange.send(address, port, requestTime);
+ *     exchange.receive(timeout);
+ *     exchange.recycle();
+ * } catch (IOException e) {
+ *     exchange.discard();
+ * }
+ * </pre>
+ * Because sockets are reused, a late answer to an earlier request can still arrive,
+ * so responses are only accepted when their originate time stamp matches what we sent.
+ */
+final class NtpExchange {
+
+    private static final int POOL_SIZE = 4;
+    private static final ArrayBlockingQueue<NtpExchange> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final byte[] buffer = new byte[NtpCodec.NTP_PACKET_SIZE];
+    private final DatagramPacket request = new DatagramPacket(buffer, buffer.length);
+    private final DatagramPacket response = new DatagramPacket(buffer, buffer.length);
+    private DatagramSocket socket;
+    // raw transmit time stamp we sent, servers echo it back as originate time stamp
+    private long sentTimeStamp;
+
+    private NtpExchange() {
+    }
+
+    /**
+     * @return pooled exchange or a new one if the pool is empty, with an open socket
+     * @throws SocketException if a socket can't be opened, the exchange stays pooled
+     */
+    static NtpExchange obtain() throws SocketException {
+        NtpExchange exchange = POOL.poll();
+        if (exchange == null) {
+            exchange = new NtpExchange();
+        }
+        try {
+            exchange.open();
+        } catch (SocketException e) {
+            exchange.recycle();
+            throw e;
+        }
+        return exchange;
+    }
+
+    /**
+     * Returns a healthy exchange to the pool, it must not be used by the caller afterwards.
+     */
+    void recycle() {
+        if (!POOL.offer(this)) {
+            closeSocket();
+        }
+    }
+
+    /**
+     * Drops the socket of a failed or cancelled exchange, the rest is still pooled.
+     */
+    void discard() {
+        closeSocket();
+        recycle();
+    }
+
+    /**
+     * @return socket of the exchange, opened by {@link #obtain()}. Closing it (cancel) fails the exchange in flight,
+     * it is never reopened mid request
+     * @throws SocketException if the socket was closed
+     */
+    DatagramSocket socket() throws SocketException {
+        if (socket == null || socket.isClosed()) {
+            throw new SocketException("socket closed");
+        }
+        return socket;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Writes a client request with the given transmit time and sends it.
+     */
+    void send(InetAddress address, int port, long requestTime) throws IOException {
+        NtpCodec.writeRequest(buffer, requestTime);
+        sentTimeStamp = NtpCodec.readRaw64(buffer, NtpCodec.TRANSMIT_TIME_OFFSET);
+        request.setAddress(address);
+        request.setPort(port);
+        socket().send(request);
+    }
+
+    /**
+     * Blocks until the answer to the last {@link #send} arrives, stale, short or non server packets are skipped.
+     *
+     * @param timeout milliseconds to wait in total
+     * @throws SocketTimeoutException if nothing matching arrived in time
+     */
+    void receive(int timeout) throws IOException {
+        DatagramSocket socket = socket();
+        long deadline = Ticks.elapsedRealtime() + timeout;
+        int remaining = timeout;
+        while (true) {
+            socket.setSoTimeout(remaining);
+            response.setLength(buffer.length);
+            socket.receive(response);
+            if (NtpCodec.isResponseTo(buffer, response.getLength(), sentTimeStamp)) {
+                return;
+            }
+            remaining = (int) (deadline - Ticks.elapsedRealtime());
+            if (remaining <= 0) {
+                throw new SocketTimeoutException("no matching sntp response");
+            }
+        }
+    }
+
+    /**
+     * Sends a train of requests over the socket, spaced apart, and collects every matching answer.
+     * Receiving continues between sends so each response is time stamped as soon as it arrives.
+     *
+     * @param host    server name stored in the samples
+     * @param count   number of requests in the train
+     * @param spacing milliseconds between requests, at least 1 so every request carries a distinct time stamp
+     * @param timeout milliseconds to wait for answers after the last request is sent
+     * @return samples of the answered requests in arrival order, may be empty
+     */
+    List<NtpSample> burst(String host, InetAddress address, int port, int count, int spacing, int timeout) throws IOException {
+        DatagramSocket socket = socket();
+        long[] sentStamps = new long[count];
+        long[] requestTimes = new long[count];
+        long[] requestTicks = new long[count];
+        boolean[] answered = new boolean[count];
+        List<NtpSample> samples = new ArrayList<>(count);
+        request.setAddress(address);
+        request.setPort(port);
+
+        spacing = Math.max(1, spacing);
+        long nextSend = Ticks.elapsedRealtime();
+        long deadline = nextSend + (long) spacing * (count - 1) + timeout;
+        int sent = 0;
+        while (samples.size() < count) {
+            long now = Ticks.elapsedRealtime();
+            if (sent < count && now >= nextSend) {
+                requestTimes[sent] = System.currentTimeMillis();
+                NtpCodec.writeRequest(buffer, requestTimes[sent]);
+                sentStamps[sent] = NtpCodec.readRaw64(buffer, NtpCodec.TRANSMIT_TIME_OFFSET);
+                requestTicks[sent] = Ticks.elapsedRealtime();
+                socket.send(request);
+                sent++;
+                nextSend = now + spacing;
+                continue;
+            }
+            if (deadline - now <= 0) {
+                break;
+            }
+            long wait = sent < count ? Math.min(deadline, nextSend) - now : deadline - now;
+            socket.setSoTimeout((int) Math.max(1, wait));
+            response.setLength(buffer.length);
+            try {
+                socket.receive(response);
+            } catch (SocketTimeoutException e) {
+                continue;//time for the next send or the deadline check
+            }
+            long responseTicks = Ticks.elapsedRealtime();
+            for (int i = 0; i < sent; i++) {
+                if (!answered[i] && NtpCodec.isResponseTo(buffer, response.getLength(), sentStamps[i])) {
+                    answered[i] = true;
+                    samples.add(NtpSample.fromResponse(host, buffer, requestTimes[i], requestTicks[i], responseTicks));
+                    break;
+                }
+            }
+        }
+        return samples;
+    }
+
+    private void open() throws SocketException {
+        if (socket == null || socket.isClosed()) {
+            socket = new DatagramSocket();
+        }
+    }
+
+    private void closeSocket() {
+        if (socket != null) {
+            socket.close();
+            socket = null;
+        }
+    }
+}
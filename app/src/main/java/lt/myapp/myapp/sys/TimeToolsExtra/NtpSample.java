@@ -0,0 +1,116 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+/**
+ * Immutable result of one successful SNTP transaction.
+ * <p>
+ * ntpTime and ntpTimeReference define a clock that can be extrapolated without the network:
+ * <pre>now = ntpTime + SystemClock.elapsedRealtime() - ntpTimeReference</pre>
+ */
+public final class NtpSample {
+
+    private final String host;
+    private final long requestTime;
+    private final long ntpTime;
+    private final long ntpTimeReference;
+    private final long roundTripTime;
+    private final long clockOffset;
+
+    /**
+     * @param host             server that answered
+     * @param requestTime      device time at which the request was sent
+     * @param ntpTime          server time computed from the response
+     * @param ntpTimeReference value of SystemClock.elapsedRealtime() corresponding to ntpTime
+     * @param roundTripTime    round trip time in milliseconds
+     * @param clockOffset      offset of the device clock against the server
+     */
+    public NtpSample(String host, long requestTime, long ntpTime, long ntpTimeReference, long roundTripTime, long clockOffset) {
+        this.host = host;
+        this.requestTime = requestTime;
+        this.ntpTime = ntpTime;
+        this.ntpTimeReference = ntpTimeReference;
+        this.roundTripTime = roundTripTime;
+        this.clockOffset = clockOffset;
+    }
+
+    /**
+     * Computes the sample from a server response.
+     *
+     * @param host          server that answered
+     * @param buffer        response packet
+     * @param requestTime   device time written to the request as transmit time
+     * @param requestTicks  SystemClock.elapsedRealtime() when the request was sent
+     * @param responseTicks SystemClock.elapsedRealtime() when the response arrived
+     */
+    public static NtpSample fromResponse(String host, byte[] buffer, long requestTime, long requestTicks, long responseTicks) {
+        long responseTime = requestTime + (responseTicks - requestTicks);
+
+        // extract the results
+        long originateTime = NtpCodec.readTimeStamp(buffer, NtpCodec.ORIGINATE_TIME_OFFSET);
+        long receiveTime = NtpCodec.readTimeStamp(buffer, NtpCodec.RECEIVE_TIME_OFFSET);
+        long transmitTime = NtpCodec.readTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET);
+        long roundTripTime = responseTicks - requestTicks - (transmitTime - receiveTime);
+        // receiveTime = originateTime + transit + skew
+        // responseTime = transmitTime + transit - skew
+        // clockOffset = ((receiveTime - originateTime) + (transmitTime - responseTime))/2
+        //             = ((originateTime + transit + skew - originateTime) +
+        //                (transmitTime - (transmitTime + transit - skew)))/2
+        //             = ((transit + skew) + (transmitTime - transmitTime - transit + skew))/2
+        //             = (transit + skew - transit + skew)/2
+        //             = (2 * skew)/2 = skew
+        long clockOffset = ((receiveTime - originateTime) + (transmitTime - responseTime)) / 2;
+
+        // use the times on this side of the network latency
+        // (response rather than request time)
+        return new NtpSample(host, requestTime, responseTime + clockOffset, responseTicks, roundTripTime, clockOffset);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public long getRequestTime() {
+        return requestTime;
+    }
+
+    public long getNtpTime() {
+        return ntpTime;
+    }
+
+    public long getNtpTimeReference() {
+        return ntpTimeReference;
+    }
+
+    public long getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    public long getClockOffset() {
+        return clockOffset;
+    }
+
+    /**
+     * @return network time extrapolated to the given elapsedRealtime value
+     */
+    public long timeAt(long elapsedRealtime) {
+        return ntpTime + elapsedRealtime - ntpTimeReference;
+    }
+
+    /**
+     * @return network time extrapolated to this moment
+     */
+    public long now() {
+        return timeAt(Ticks.elapsedRealtime());
+    }
+
+    /**
+     * @return milliseconds passed since the sample was taken
+     */
+    public long getAge() {
+        return Ticks.elapsedRealtime() - ntpTimeReference;
+    }
+
+    @Override
+    public String toString() {
+        return "NtpSample{host=" + host + ", ntpTime=" + ntpTime + ", roundTrip=" + roundTripTime + ", offset=" + clockOffset + "}";
+    }
+}
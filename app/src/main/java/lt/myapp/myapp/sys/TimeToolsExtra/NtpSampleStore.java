@@ -0,0 +1,148 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+import lt.myapp.myapp.sys.Watchdog.MainThreadGuard;
+
+/**
+ * Keeps the last good {@link NtpSample} in a small fixed size file so a cold start has network time after a file read.
+ * <p>
+ * Record layout (big endian, {@value #RECORD_SIZE} bytes):
+ * magic, version, offset, round trip, wall clock and elapsedRealtime at the sample, crc32 of everything before it.
+ * <p>
+ * Within the same boot the sample is restored exactly. After a reboot elapsedRealtime restarts, so only the offset
+ * against the wall clock is kept. A reboot is detected when the stored elapsedRealtime is ahead of the current one
+ * or when the boot moment (wall clock minus elapsedRealtime) moved more than {@link #BOOT_TOLERANCE}.
+ */
+public final class NtpSampleStore {
+
+    static final int RECORD_SIZE = 48;
+    private static final int MAGIC = 0x4E545053;//"NTPS"
+    private static final int VERSION = 1;
+    private static final int CRC_OFFSET = 40;
+    // wall clock corrections move the computed boot moment a little, a reboot moves it a lot
+    static final long BOOT_TOLERANCE = 5000L;
+    static final String HOST = "stored";
+
+    private final File file;
+    // latest sample waiting to be written, writes are coalesced so only the newest one hits the disk
+    private final AtomicReference<NtpSample> pending = new AtomicReference<>();
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private volatile NtpSample loaded;
+
+    /**
+     * @param file where the record is kept, usually in context.getFilesDir()
+     */
+    public NtpSampleStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the stored sample, blocking: call it off the main thread.
+     *
+     * @return the stored sample adjusted to this boot or null if there is none or it's damaged
+     */
+    public NtpSample load() {
+        MainThreadGuard.checkNotMain("NtpSampleStore.load");
+        byte[] record = new byte[RECORD_SIZE];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.readFully(record);
+        } catch (IOException e) {
+            return null;//nothing stored yet
+        }
+        loaded = decode(record, System.currentTimeMillis(), Ticks.elapsedRealtime());
+        return loaded;
+    }
+
+    /**
+     * Queues the sample to be written on the time executor for blocking work, never blocks the caller.
+     */
+    public void save(NtpSample sample) {
+        if (sample == loaded) {
+            return;//just read back from the disk
+        }
+        pending.set(sample);
+        if (writing.compareAndSet(false, true)) {
+            TimeExecutor.ioScheduler().scheduleDirect(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            NtpSample sample;
+            while ((sample = pending.getAndSet(null)) != null) {
+                write(encode(sample));
+            }
+        } finally {
+            writing.set(false);
+        }
+        if (pending.get() != null && writing.compareAndSet(false, true)) {
+            TimeExecutor.ioScheduler().scheduleDirect(this::drain);//raced with a save() that saw us still writing
+        }
+    }
+
+    private void write(byte[] record) {
+        // fixed size record overwritten in place, the crc catches torn writes
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(0);
+            raf.write(record);
+            raf.setLength(RECORD_SIZE);
+        } catch (IOException e) {
+            Log.w(SNTPClient.TAG, "storing ntp sample failed", e);
+        }
+    }
+
+    static byte[] encode(NtpSample sample) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sample.getClockOffset());
+        buffer.putLong(sample.getRoundTripTime());
+        // device wall clock at the moment the sample refers to
+        buffer.putLong(sample.getNtpTime() - sample.getClockOffset());
+        buffer.putLong(sample.getNtpTimeReference());
+        buffer.putInt(crc(buffer.array()));
+        return buffer.array();
+    }
+
+    /**
+     * @param record  stored bytes
+     * @param nowWall System.currentTimeMillis() now
+     * @param nowTicks SystemClock.elapsedRealtime() now
+     * @return sample valid for the current boot, null if the record is damaged
+     */
+    static NtpSample decode(byte[] record, long nowWall, long nowTicks) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        long offset = buffer.getLong();
+        long roundTrip = buffer.getLong();
+        long wall = buffer.getLong();
+        long ticks = buffer.getLong();
+        if (buffer.getInt() != crc(record)) {
+            return null;
+        }
+
+        boolean sameBoot = ticks <= nowTicks && Math.abs((wall - ticks) - (nowWall - nowTicks)) <= BOOT_TOLERANCE;
+        if (!sameBoot) {
+            // elapsedRealtime restarted, place the sample on this boot's timeline by how old it is by the wall clock
+            ticks = nowTicks - Math.max(0, nowWall - wall);
+        }
+        return new NtpSample(HOST, wall, wall + offset, ticks, roundTrip, offset);
+    }
+
+    private static int crc(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, CRC_OFFSET);
+        return (int) crc.getValue();
+    }
+}
@@ -16,15 +16,22 @@ package lt.myapp.myapp.sys.TimeToolsExtra;
  * limitations under the License.
  */
 
-import android.os.SystemClock;
-
-import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-
-import io.reactivex.Completable;
-import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.schedulers.Schedulers;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import lt.myapp.myapp.sys.Watchdog.MainThreadGuard;
 
 /**
  * {@hide}
@@ -71,22 +78,49 @@ public class SNTPClient {
 
     public static final String TAG = "SntpClient";
 
-    private static final int REFERENCE_TIME_OFFSET = 16;
-    private static final int ORIGINATE_TIME_OFFSET = 24;
-    private static final int RECEIVE_TIME_OFFSET = 32;
-    private static final int TRANSMIT_TIME_OFFSET = 40;
-    private static final int NTP_PACKET_SIZE = 48;
+    public static final int BURST_SIZE = 4;
+    private static final int BURST_SPACING = 50;//ms between requests of a burst
+
+    static final int MAX_RETRIES = 2;
+    private static final long RETRY_BACKOFF = 200;//ms, doubled every retry
+    private static final Random JITTER = new Random();
 
-    private static final int NTP_PORT = 123;
-    private static final int NTP_MODE_CLIENT = 3;
-    private static final int NTP_VERSION = 3;
+    // requests in flight by host:port/timeout, see requestShared
+    private static final ConcurrentHashMap<String, Single<SNTPClient>> IN_FLIGHT = new ConcurrentHashMap<>();
 
-    // Number of seconds between Jan 1, 1900 and Jan 1, 1970
-    // 70 years plus 17 leap days
-    private static final long OFFSET_1900_TO_1970 = ((365L * 70L) + 17L) * 24L * 60L * 60L;
+    /**
+     * Default pool of servers used by the multi-server queries
+     */
+    public static final List<String> DEFAULT_SERVERS = Arrays.asList(
+            "time.google.com",
+            "time.cloudflare.com",
+            "pool.ntp.org",
+            "time.android.com");
+
+    /**
+     * How a multi-server query picks its answer
+     */
+    public enum PoolMode {
+        /**
+         * first server that answers correctly wins, all the others are cancelled
+         */
+        FIRST_GOOD,
+        /**
+         * waits for all servers (or the deadline) and picks the lowest round trip sample
+         */
+        BEST_ROUND_TRIP
+    }
+
+    static final int NTP_PORT = 123;
+
+    // port used when the caller doesn't give one, tests point it at a local responder
+    static volatile int sDefaultPort = NTP_PORT;
 
     private long requestTime;
 
+    // host of the last request
+    private String mHost;
+
     //offset calculated from the response
     private long clockOffset;
 
@@ -99,12 +133,23 @@ public class SNTPClient {
     // round trip time in milliseconds
     private long mRoundTripTime;
 
+    // time spent resolving the host name in milliseconds, 0 when it came from the cache
+    private long mResolveTime;
+
+    // offset jitter of the last burst in milliseconds
+    private double mJitter;
+
     // callback listener
     private Listener listener;
 
     private boolean requestResult = false;
     private Exception exception = null;
 
+    // socket of the request in flight, taken and closed by cancel() to unblock receive(). Whoever takes it out owns
+    // it: cancel() closes it, the request recycles its exchange only if it got the socket back first
+    private final AtomicReference<DatagramSocket> mSocket = new AtomicReference<>();
+    private volatile boolean cancelled = false;
+
     /**
      * Construct SntpClient for retrieve time with callback
      *
@@ -114,6 +159,26 @@ public class SNTPClient {
         this.listener = listener;
     }
 
+    /**
+     * Wraps an answer the {@link SntpEngine} already recorded, so the stats aren't counted twice
+     *
+     * @param sample      the answer
+     * @param resolveTime milliseconds spent resolving the host name
+     * @return client holding the results of the sample
+     */
+    static SNTPClient fromSample(NtpSample sample, long resolveTime) {
+        SNTPClient client = new SNTPClient(null);
+        client.mHost = sample.getHost();
+        client.mResolveTime = resolveTime;
+        client.requestTime = sample.getRequestTime();
+        client.clockOffset = sample.getClockOffset();
+        client.mNtpTime = sample.getNtpTime();
+        client.mNtpTimeReference = sample.getNtpTimeReference();
+        client.mRoundTripTime = sample.getRoundTripTime();
+        client.requestResult = true;
+        return client;
+    }
+
     /**
      * Sends an SNTP request to the given host and processes the response.
      *
@@ -122,68 +187,149 @@ public class SNTPClient {
      * @return true if the transaction was successful.
      */
     public /*boolean*/ void requestTime(String host, int timeout) {
-        DatagramSocket socket = null;
-        try {
-            socket = new DatagramSocket();
-            socket.setSoTimeout(timeout);
-            InetAddress address = InetAddress.getByName(host);
-            byte[] buffer = new byte[NTP_PACKET_SIZE];
-            DatagramPacket request = new DatagramPacket(buffer, buffer.length, address, NTP_PORT);
+        requestTime(host, sDefaultPort, timeout);
+    }
 
-            // set mode = 3 (client) and version = 3
-            // mode is in low 3 bits of first byte
-            // version is in bits 3-5 of first byte
-            buffer[0] = NTP_MODE_CLIENT | (NTP_VERSION << 3);
+    /**
+     * Sends an SNTP request to the given host and port and processes the response.
+     *
+     * @param host    host name of the server.
+     * @param port    udp port of the server.
+     * @param timeout network timeout in milliseconds.
+     */
+    public void requestTime(String host, int port, int timeout) {
+        MainThreadGuard.checkNotMain("SNTPClient.requestTime");//blocking dns and receive for up to timeout ms
+        mHost = host;
+        mResolveTime = 0;
+        NtpExchange exchange = null;
+        try {
+            exchange = NtpExchange.obtain();
+            InetAddress address = resolve(exchange, host);
 
             // get current time and write it to the request packet
             requestTime = System.currentTimeMillis();
-            long requestTicks = SystemClock.elapsedRealtime();
-            writeTimeStamp(buffer, TRANSMIT_TIME_OFFSET, requestTime);
-
-            socket.send(request);
+            long requestTicks = Ticks.elapsedRealtime();
+            exchange.send(address, port, requestTime);
 
             // read the response
-            DatagramPacket response = new DatagramPacket(buffer, buffer.length);
-            socket.receive(response);
-            long responseTicks = SystemClock.elapsedRealtime();
-            long responseTime = requestTime + (responseTicks - requestTicks);
-
-            // extract the results
-            long originateTime = readTimeStamp(buffer, ORIGINATE_TIME_OFFSET);
-            long receiveTime = readTimeStamp(buffer, RECEIVE_TIME_OFFSET);
-            long transmitTime = readTimeStamp(buffer, TRANSMIT_TIME_OFFSET);
-            long roundTripTime = responseTicks - requestTicks - (transmitTime - receiveTime);
-            // receiveTime = originateTime + transit + skew
-            // responseTime = transmitTime + transit - skew
-            // clockOffset = ((receiveTime - originateTime) + (transmitTime - responseTime))/2
-            //             = ((originateTime + transit + skew - originateTime) +
-            //                (transmitTime - (transmitTime + transit - skew)))/2
-            //             = ((transit + skew) + (transmitTime - transmitTime - transit + skew))/2
-            //             = (transit + skew - transit + skew)/2
-            //             = (2 * skew)/2 = skew
-            clockOffset = ((receiveTime - originateTime) + (transmitTime - responseTime)) / 2;
-            // if (false) Log.d(TAG, "round trip: " + roundTripTime + " ms");
-            // if (false) Log.d(TAG, "clock offset: " + clockOffset + " ms");
-
-            // save our results - use the times on this side of the network latency
-            // (response rather than request time)
-            mNtpTime = responseTime + clockOffset;
-            mNtpTimeReference = responseTicks;
-            mRoundTripTime = roundTripTime;
+            exchange.receive(timeout);
+            long responseTicks = Ticks.elapsedRealtime();
+
+            // offset and round trip math lives in NtpSample so every transport shares it
+            setResult(NtpSample.fromResponse(host, exchange.buffer(), requestTime, requestTicks, responseTicks));
+            release(exchange);
         } catch (Exception e) {
             //if (false) Log.d(TAG, "request time failed: " + e);
-            requestResult = false;
-            exception = e;
+            setError(e);
+            if (exchange != null) {
+                exchange.discard();//socket state is unknown (timeout or cancel), don't reuse it
+            }
             //listener.onError(requestTime, e);
             //return false;
-        } finally {
-            if (socket != null) {
-                socket.close();
+        }
+        //return true;
+    }
+
+    /**
+     * Sends a burst of SNTP requests over one socket and keeps the best answer picked by a {@link ClockFilter}.
+     * <p>
+     * Gives a tighter offset than a single request for a few more packets: the sample with the shortest round trip
+     * carries the least queueing delay. Public servers rate limit, keep bursts short.
+     *
+     * @param host    host name of the server.
+     * @param port    udp port of the server.
+     * @param count   number of requests in the burst.
+     * @param timeout network timeout in milliseconds after the last request.
+     */
+    public void requestBurst(String host, int port, int count, int timeout) {
+        MainThreadGuard.checkNotMain("SNTPClient.requestBurst");
+        mHost = host;
+        mResolveTime = 0;
+        NtpExchange exchange = null;
+        try {
+            exchange = NtpExchange.obtain();
+            InetAddress address = resolve(exchange, host);
+            requestTime = System.currentTimeMillis();
+            List<NtpSample> samples = exchange.burst(host, address, port, count, BURST_SPACING, timeout);
+            if (samples.isEmpty()) {
+                throw new SocketTimeoutException("no answer to the sntp burst");
+            }
+            ClockFilter filter = new ClockFilter();
+            for (NtpSample sample : samples) {
+                filter.add(sample);
+            }
+            setResult(filter.best());
+            mJitter = filter.jitter();
+            release(exchange);
+        } catch (Exception e) {
+            setError(e);
+            if (exchange != null) {
+                exchange.discard();
             }
         }
+    }
 
+    private InetAddress resolve(NtpExchange exchange, String host) throws Exception {
+        DatagramSocket socket = exchange.socket();
+        mSocket.set(socket);
+        if (cancelled) {//checked after publishing, so either we see the flag or cancel() sees the socket
+            throw new SocketTimeoutException("request cancelled");
+        }
+        long resolveTicks = Ticks.elapsedRealtime();
+        InetAddress address = HostResolver.getInstance().resolve(host);
+        mResolveTime = Ticks.elapsedRealtime() - resolveTicks;
+        if (cancelled) {//cancelled during a slow lookup, don't send anything
+            throw new SocketTimeoutException("request cancelled");
+        }
+        return address;
+    }
+
+    /**
+     * Returns the exchange of a finished request to the pool, unless cancel() took its socket meanwhile: then the
+     * socket is (being) closed and must not be handed to the next request
+     */
+    private void release(NtpExchange exchange) {
+        if (mSocket.getAndSet(null) != null) {
+            exchange.recycle();
+        } else {
+            exchange.discard();
+        }
+    }
+
+    private void setResult(NtpSample sample) {
+        clockOffset = sample.getClockOffset();
+        // if (false) Log.d(TAG, "round trip: " + sample.getRoundTripTime() + " ms");
+        // if (false) Log.d(TAG, "clock offset: " + clockOffset + " ms");
+
+        // save our results - use the times on this side of the network latency
+        // (response rather than request time)
+        requestTime = sample.getRequestTime();
+        mNtpTime = sample.getNtpTime();
+        mNtpTimeReference = sample.getNtpTimeReference();
+        mRoundTripTime = sample.getRoundTripTime();
+        mJitter = 0;
         requestResult = true;//for our upgraded getDate call
-        //return true;
+        exception = null;
+        ServerStats.get(mHost).record(mRoundTripTime);
+        SntpMetrics.forServer(mHost).success(mResolveTime, mRoundTripTime, clockOffset);
+    }
+
+    private void setError(Exception e) {
+        requestResult = false;
+        exception = e;
+        mSocket.set(null);//the exchange is discarded, its socket closed either way
+        SntpMetrics.forServer(mHost).failure(e, cancelled);
+    }
+
+    /**
+     * Aborts the request in flight (if any) by closing its socket, a blocked requestTime returns with an error
+     */
+    public void cancel() {
+        cancelled = true;
+        DatagramSocket socket = mSocket.getAndSet(null);
+        if (socket != null) {
+            socket.close();
+        }
     }
 
     /**
@@ -199,6 +345,25 @@ public class SNTPClient {
         return clockOffset;
     }
 
+    /**
+     * Returns host name of the last request
+     */
+    public String getHost() {
+        return mHost;
+    }
+
+    /**
+     * Returns results of the last successful transaction as an immutable sample
+     *
+     * @return the sample or null if the request failed
+     */
+    public NtpSample getSample() {
+        if (!requestResult) {
+            return null;
+        }
+        return new NtpSample(mHost, requestTime, mNtpTime, mNtpTimeReference, mRoundTripTime, clockOffset);
+    }
+
     /**
      * Returns the reference clock value (value of SystemClock.elapsedRealtime())
      * corresponding to the NTP time.
@@ -219,118 +384,311 @@ public class SNTPClient {
     }
 
     /**
-     * Reads an unsigned 32 bit big endian number from the given offset in the buffer.
+     * Returns the time spent on resolving the host name, kept apart from the round trip time
+     *
+     * @return resolution time in milliseconds.
      */
-    private long read32(byte[] buffer, int offset) {
-        byte b0 = buffer[offset];
-        byte b1 = buffer[offset + 1];
-        byte b2 = buffer[offset + 2];
-        byte b3 = buffer[offset + 3];
-
-        // convert signed bytes to unsigned values
-        int i0 = ((b0 & 0x80) == 0x80 ? (b0 & 0x7F) + 0x80 : b0);
-        int i1 = ((b1 & 0x80) == 0x80 ? (b1 & 0x7F) + 0x80 : b1);
-        int i2 = ((b2 & 0x80) == 0x80 ? (b2 & 0x7F) + 0x80 : b2);
-        int i3 = ((b3 & 0x80) == 0x80 ? (b3 & 0x7F) + 0x80 : b3);
+    public long getResolveTime() {
+        return mResolveTime;
+    }
 
-        return ((long) i0 << 24) + ((long) i1 << 16) + ((long) i2 << 8) + (long) i3;
+    /**
+     * Returns the offset jitter of the last burst, see {@link #requestBurst}
+     *
+     * @return jitter in milliseconds, 0 for single requests.
+     */
+    public double getJitter() {
+        return mJitter;
     }
 
     /**
-     * Reads the NTP time stamp at the given offset in the buffer and returns
-     * it as a system time (milliseconds since January 1, 1970).
+     * Makes a call to sntp server to retrieve timestamp, also provides result offset
+     * <p>
+     * Runs on the shared {@link TimeExecutor} and calls the listener back on that worker thread.
+     * Concurrent calls for the same server share one network exchange.
+     *
+     * @param sntpServer
+     * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
      */
-    private long readTimeStamp(byte[] buffer, int offset) {
-        long seconds = read32(buffer, offset);
-        long fraction = read32(buffer, offset + 4);
-        return ((seconds - OFFSET_1900_TO_1970) * 1000) + ((fraction * 1000L) / 0x100000000L);
+    public static TimeRequest getDateANR(/*TimeZone _timeZone,*/ String sntpServer, Listener _listener) {
+        return getDateANR(sntpServer, TimeExecutor.direct(), _listener);
     }
 
     /**
-     * Writes system time (milliseconds since January 1, 1970) as an NTP time stamp
-     * at the given offset in the buffer.
+     * Like {@link #getDateANR(String, Listener)} but the listener is called on the given executor
+     *
+     * @param sntpServer
+     * @param callbackExecutor executor calling the listener, see {@link TimeExecutor#mainThread()} and {@link TimeExecutor#direct()}
+     * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
      */
-    private void writeTimeStamp(byte[] buffer, int offset, long time) {
-        long seconds = time / 1000L;
-        long milliseconds = time - seconds * 1000L;
-        seconds += OFFSET_1900_TO_1970;
-
-        // write seconds in big endian format
-        buffer[offset++] = (byte) (seconds >> 24);
-        buffer[offset++] = (byte) (seconds >> 16);
-        buffer[offset++] = (byte) (seconds >> 8);
-        buffer[offset++] = (byte) (seconds);
-
-        long fraction = milliseconds * 0x100000000L / 1000L;
-        // write fraction in big endian format
-        buffer[offset++] = (byte) (fraction >> 24);
-        buffer[offset++] = (byte) (fraction >> 16);
-        buffer[offset++] = (byte) (fraction >> 8);
-        // low order bits should be random data
-        buffer[offset++] = (byte) (Math.random() * 255.0);
+    public static TimeRequest getDateANR(String sntpServer, Executor callbackExecutor, Listener _listener) {
+        TimeRequest request = new TimeRequest(_listener, callbackExecutor, System.currentTimeMillis());
+        requestShared(sntpServer, 5000)
+                .toMaybe()
+                .subscribe(request.observer(null));
+        //long nowAsPerDeviceTimeZone = sntpClient.getNtpTime();
+
+
+        //if we want to return results in string formatted way
+        //SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+        //sdf.setTimeZone(_timeZone);
+        //String rawDate = sdf.format(nowAsPerDeviceTimeZone); // The output time is formatted according to ISO 8601 format.
+
+
+        // Log.e(TAG, _timeZone.getID());
+
+        //_listener.onTimeReceived(rawDate);
+        return request;
     }
 
     /**
      * Makes a call to sntp server to retrieve timestamp, also provides result offset
+     * <p>
+     * it's like the above function, except it doesn't produce ANR exception when after payment user tries to click "back" button
+     * something is messed up with the above function.
+     * Todo: explain why new Thread().start() makes "back" button generate ANR after the purchase, priority: interesting :D
+     * <p>
+     * Concurrent calls for the same server share one network exchange.
+     *
      * @param sntpServer
      * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
      */
-    public static void getDateANR(/*TimeZone _timeZone,*/ String sntpServer, Listener _listener) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                SNTPClient sntpClient = new SNTPClient(_listener);
-                sntpClient.requestTime(sntpServer, 5000);
-                if (sntpClient.isRequestResult()) {
+    public static TimeRequest getDate(String sntpServer, Listener _listener) {
+        return getDate(sntpServer, TimeExecutor.mainThread(), _listener);
+    }
 
-                    //long nowAsPerDeviceTimeZone = sntpClient.getNtpTime();
+    /**
+     * Like {@link #getDate(String, Listener)} but the listener is called on the given executor
+     *
+     * @param sntpServer
+     * @param callbackExecutor executor calling the listener, see {@link TimeExecutor#mainThread()} and {@link TimeExecutor#direct()}
+     * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
+     */
+    public static TimeRequest getDate(String sntpServer, Executor callbackExecutor, Listener _listener) {
+        TimeRequest request = new TimeRequest(_listener, callbackExecutor, System.currentTimeMillis());
+        requestShared(sntpServer, 5000)
+                .toMaybe()
+                .subscribe(request.observer(null));
+        return request;
+    }
 
+    /**
+     * Makes a burst of calls to sntp server over one socket and reports the clock filtered offset
+     * <p>
+     * Like {@link #getDate(String, Listener)} the listener is called on the main thread.
+     *
+     * @param sntpServer
+     * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
+     */
+    public static TimeRequest getDateBurst(String sntpServer, Listener _listener) {
+        return getDateBurst(sntpServer, TimeExecutor.mainThread(), _listener);
+    }
 
-                    //if we want to return results in string formatted way
-                    //SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
-                    //sdf.setTimeZone(_timeZone);
-                    //String rawDate = sdf.format(nowAsPerDeviceTimeZone); // The output time is formatted according to ISO 8601 format.
+    /**
+     * Like {@link #getDateBurst(String, Listener)} but the listener is called on the given executor
+     *
+     * @param sntpServer
+     * @param callbackExecutor executor calling the listener, see {@link TimeExecutor#mainThread()} and {@link TimeExecutor#direct()}
+     * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
+     */
+    public static TimeRequest getDateBurst(String sntpServer, Executor callbackExecutor, Listener _listener) {
+        TimeRequest request = new TimeRequest(_listener, callbackExecutor, System.currentTimeMillis());
+        Single.<SNTPClient>create(emitter -> {
+            SNTPClient sntpClient = new SNTPClient(_listener);
+            emitter.setCancellable(sntpClient::cancel);
+            sntpClient.requestBurst(sntpServer, sDefaultPort, BURST_SIZE, 5000);
+            if (sntpClient.isRequestResult()) {
+                NetworkClock.getInstance().update(sntpClient.getSample());
+                emitter.onSuccess(sntpClient);
+            } else {
+                emitter.tryOnError(sntpClient.getException());
+            }
+        })
+                .subscribeOn(TimeExecutor.ioScheduler())
+                .toMaybe()
+                .subscribe(request.observer(null));
+        return request;
+    }
 
+    /**
+     * Single flight: while a request to the server is running every caller gets that same request,
+     * so rapid repeated calls produce one packet and the result is fanned out to all of them.
+     * The request is cancelled (its socket closed) once every caller has disposed.
+     * <p>
+     * Only callers asking for the same host, port and timeout share a request, timeouts are never merged:
+     * a caller with a shorter timeout doesn't wait on a longer running request and vice versa.
+     *
+     * @param sntpServer host name of the server
+     * @param timeout    network timeout in milliseconds, part of the sharing key
+     * @return shared request
+     */
+    static Single<SNTPClient> requestShared(String sntpServer, int timeout) {
+        int port = sDefaultPort;
+        String key = sntpServer + ":" + port + "/" + timeout;
+        Single<SNTPClient> flight = IN_FLIGHT.get(key);
+        if (flight != null) {
+            return flight;
+        }
+        AtomicReference<Single<SNTPClient>> self = new AtomicReference<>();
+        Single<SNTPClient> created = requestHedged(sntpServer, port, timeout)
+                .doFinally(() -> IN_FLIGHT.remove(key, self.get()))
+                .toObservable()
+                .share()
+                .singleOrError();
+        self.set(created);
+        flight = IN_FLIGHT.putIfAbsent(key, created);
+        return flight != null ? flight : created;
+    }
 
-                    // Log.e(TAG, _timeZone.getID());
+    /**
+     * Forgets the shared requests and points the default port back at {@link #NTP_PORT}
+     */
+    static void reset() {
+        IN_FLIGHT.clear();
+        sDefaultPort = NTP_PORT;
+    }
 
-                    //_listener.onTimeReceived(rawDate);
-                    _listener.onTimeReceived(sntpClient.getRequestTime(), sntpClient.getNtpTime(), sntpClient.getClockOffset());
-                }else{
-                    _listener.onError(sntpClient.getRequestTime(), sntpClient.getException());
+    private static Exception toException(Throwable throwable) {
+        return throwable instanceof Exception ? (Exception) throwable : new Exception(throwable);
+    }
+
+    /**
+     * Sends a single request through the {@link SntpEngine}, so requests in flight don't hold a thread each,
+     * disposing it closes the channel so late responses are dropped right away.
+     * <p>
+     * The result is handed over to the {@link TimeExecutor}, callers never run on the engine thread.
+     *
+     * @param sntpServer host name of the server
+     * @param port       udp port of the server
+     * @param timeout    network timeout in milliseconds
+     * @return client holding the results, errors if the request failed
+     */
+    static Single<SNTPClient> request(String sntpServer, int port, int timeout) {
+        return Single.<SNTPClient>create(emitter -> {
+            // the engine records the stats and refreshes the shared clock with every good answer
+            emitter.setCancellable(SntpEngine.getDefault().request(sntpServer, port, timeout, new SntpEngine.Callback() {
+                @Override
+                public void onSample(NtpSample sample, long resolveTime) {
+                    emitter.onSuccess(fromSample(sample, resolveTime));
                 }
 
+                @Override
+                public void onError(long requestTime, Exception e) {
+                    emitter.tryOnError(e);
+                }
+            }));
+        }).observeOn(TimeExecutor.scheduler());
+    }
+
+    /**
+     * Request with a timeout sized from the server's round trip history, hedged and retried.
+     * <p>
+     * If the first request has no answer by the server's p95 round trip a second one is sent and whichever answers first wins,
+     * the other gets cancelled. When both fail the pair is retried up to {@link #MAX_RETRIES} times with jittered exponential backoff.
+     *
+     * @param sntpServer host name of the server
+     * @param port       udp port of the server
+     * @param maxTimeout timeout used while the server has no history, also the upper bound
+     * @return client holding the results, errors if every attempt failed
+     */
+    static Single<SNTPClient> requestHedged(String sntpServer, int port, int maxTimeout) {
+        return Single.defer(() -> {
+            ServerStats stats = ServerStats.get(sntpServer);
+            int timeout = stats.getTimeout(maxTimeout);
+            int hedgeDelay = stats.getHedgeDelay(timeout);
+            if (hedgeDelay < 0) {
+                return request(sntpServer, port, timeout);
             }
-        }).start();
+            Observable<SNTPClient> first = request(sntpServer, port, timeout).toObservable();
+            Observable<SNTPClient> hedge = request(sntpServer, port, timeout).toObservable()
+                    .doOnSubscribe(disposable -> SntpMetrics.forServer(sntpServer).hedge())
+                    .delaySubscription(hedgeDelay, TimeUnit.MILLISECONDS, TimeExecutor.scheduler());
+            return Observable.mergeDelayError(first, hedge).firstOrError();//errors only count when both failed
+        }).retryWhen(errors -> errors
+                .zipWith(Flowable.range(1, MAX_RETRIES + 1), (error, attempt) -> {
+                    if (attempt > MAX_RETRIES) {
+                        throw toException(error);
+                    }
+                    SntpMetrics.forServer(sntpServer).retry();
+                    return attempt;
+                })
+                .flatMap(attempt -> Flowable.timer(backoff(attempt), TimeUnit.MILLISECONDS, TimeExecutor.scheduler())));
     }
 
     /**
-     * Makes a call to sntp server to retrieve timestamp, also provides result offset
+     * @param attempt retry number starting at 1
+     * @return jittered exponential backoff in milliseconds, between half and one and a half of the base
+     */
+    static long backoff(int attempt) {
+        long base = RETRY_BACKOFF << (attempt - 1);
+        synchronized (JITTER) {
+            return base / 2 + (long) (JITTER.nextDouble() * base);
+        }
+    }
+
+    /**
+     * Queries all servers of the pool at the same time and picks one answer
      * <p>
-     * it's like the above function, except it doesn't produce ANR exception when after payment user tries to click "back" button
-     * something is messed up with the above function.
-     * Todo: explain why new Thread().start() makes "back" button generate ANR after the purchase, priority: interesting :D
+     * FIRST_GOOD returns as soon as one server answers, BEST_ROUND_TRIP waits for every server
+     * but no longer than the deadline and returns the lowest round trip sample (it's offset is the least skewed by network delay).
+     * Requests still in flight when the answer is picked get cancelled.
      *
-     * @param sntpServer
+     * @param sntpServers pool of server host names
+     * @param mode        how the answer is picked
+     * @param deadline    overall time budget in milliseconds, also used as the socket timeout
+     * @return the chosen client or empty if no server answered in time
+     */
+    static Maybe<SNTPClient> requestFromPool(List<String> sntpServers, PoolMode mode, int deadline) {
+        Observable<SNTPClient> answers = Observable.fromIterable(sntpServers)
+                .flatMap(host -> request(host, sDefaultPort, ServerStats.get(host).getTimeout(deadline))
+                        .toObservable()
+                        .onErrorResumeNext(Observable.<SNTPClient>empty()))//one bad server shouldn't fail the pool
+                // dns, queueing, hedges and retries come on top of the socket timeouts, the deadline bounds them all
+                .takeUntil(Observable.timer(deadline, TimeUnit.MILLISECONDS));
+
+        if (mode == PoolMode.FIRST_GOOD) {
+            return answers.firstElement();
+        }
+        return answers
+                .reduce((best, next) -> next.getRoundTripTime() < best.getRoundTripTime() ? next : best);
+    }
+
+    /**
+     * Makes a call to a pool of sntp servers in parallel to retrieve timestamp, also provides result offset
+     * <p>
+     * Like {@link #getDate(String, Listener)} the listener is called on the main thread.
+     *
+     * @param sntpServers pool of server host names, see {@link #DEFAULT_SERVERS}
+     * @param mode        how the answer is picked
+     * @param deadline    overall time budget in milliseconds
      * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
      */
-    public static void getDate(String sntpServer, Listener _listener) {
-        SNTPClient sntpClient = new SNTPClient(_listener);
-        Completable.fromAction(() -> sntpClient.requestTime(sntpServer, 5000))
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(
-                        () -> {
-                            if (sntpClient.isRequestResult())
-                                _listener.onTimeReceived(sntpClient.getRequestTime(), sntpClient.getNtpTime(), sntpClient.getClockOffset());
-                            else
-                                _listener.onError(sntpClient.getRequestTime(), sntpClient.getException());
-                        },
-                        throwable -> {
-                            throwable.printStackTrace();
-                        }
-                );
+    public static TimeRequest getDate(List<String> sntpServers, PoolMode mode, int deadline, Listener _listener) {
+        return getDate(sntpServers, mode, deadline, TimeExecutor.mainThread(), _listener);
+    }
 
+    /**
+     * Like {@link #getDate(List, PoolMode, int, Listener)} but the listener is called on the given executor
+     *
+     * @param sntpServers      pool of server host names, see {@link #DEFAULT_SERVERS}
+     * @param mode             how the answer is picked
+     * @param deadline         overall time budget in milliseconds
+     * @param callbackExecutor executor calling the listener, see {@link TimeExecutor#mainThread()} and {@link TimeExecutor#direct()}
+     * @param _listener
+     * @return handle cancelling the request, see {@link TimeRequest#bindTo}
+     */
+    public static TimeRequest getDate(List<String> sntpServers, PoolMode mode, int deadline, Executor callbackExecutor, Listener _listener) {
+        TimeRequest request = new TimeRequest(_listener, callbackExecutor, System.currentTimeMillis());
+        requestFromPool(sntpServers, mode, deadline)
+                .subscribe(request.observer(new SocketTimeoutException("no sntp server answered in " + deadline + " ms")));
+        return request;
     }
 
 }
@@ -0,0 +1,101 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent round trip times of one SNTP server, used to size timeouts and hedge delays.
+ * <p>
+ * Keeps the last {@link #WINDOW} round trips in a ring. Until {@link #MIN_SAMPLES} are collected the
+ * callers' defaults are used, afterwards the timeout is a multiple of the p95 round trip.
+ */
+public final class ServerStats {
+
+    static final int WINDOW = 32;
+    static final int MIN_SAMPLES = 5;
+    // timeout = p95 * factor, clamped to [MIN_TIMEOUT, caller maximum]
+    private static final int TIMEOUT_FACTOR = 4;
+    static final int MIN_TIMEOUT = 250;
+    static final int MIN_HEDGE_DELAY = 20;
+
+    private static final ConcurrentHashMap<String, ServerStats> SERVERS = new ConcurrentHashMap<>();
+
+    private final long[] roundTrips = new long[WINDOW];
+    private final long[] scratch = new long[WINDOW];
+    private int count;
+    private int head;
+
+    ServerStats() {
+    }
+
+    /**
+     * Forgets the round trip history of every host
+     */
+    static void reset() {
+        SERVERS.clear();
+    }
+
+    /**
+     * @return stats of the host, created on first use
+     */
+    public static ServerStats get(String host) {
+        ServerStats stats = SERVERS.get(host);
+        if (stats == null) {
+            ServerStats created = new ServerStats();
+            stats = SERVERS.putIfAbsent(host, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @param roundTrip round trip of a successful request in milliseconds
+     */
+    public synchronized void record(long roundTrip) {
+        roundTrips[head] = Math.max(0, roundTrip);
+        head = (head + 1) % WINDOW;
+        if (count < WINDOW) {
+            count++;
+        }
+    }
+
+    /**
+     * @param percentile 0..100
+     * @return round trip at the percentile or -1 when there are too few samples
+     */
+    public synchronized long percentile(int percentile) {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        System.arraycopy(roundTrips, 0, scratch, 0, count);
+        Arrays.sort(scratch, 0, count);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return scratch[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * @param maxTimeout timeout used while there is no history, also the upper bound
+     * @return socket timeout in milliseconds for the next request
+     */
+    public int getTimeout(int maxTimeout) {
+        long p95 = percentile(95);
+        if (p95 < 0) {
+            return maxTimeout;
+        }
+        return (int) Math.max(MIN_TIMEOUT, Math.min(maxTimeout, p95 * TIMEOUT_FACTOR));
+    }
+
+    /**
+     * @param maxTimeout timeout of the request being hedged
+     * @return milliseconds to wait for an answer before a second request is sent, or -1 to not hedge
+     */
+    public int getHedgeDelay(int maxTimeout) {
+        long p95 = percentile(95);
+        if (p95 < 0 || p95 >= maxTimeout) {
+            return -1;
+        }
+        return (int) Math.max(MIN_HEDGE_DELAY, p95);
+    }
+}
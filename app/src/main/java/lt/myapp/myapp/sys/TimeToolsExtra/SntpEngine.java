@@ -0,0 +1,384 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import io.reactivex.functions.Cancellable;
+
+/**
+ * Non blocking SNTP engine: one thread and one {@link Selector} drive any number of requests in flight.
+ * <p>
+ * Every request gets its own connected {@link DatagramChannel} and deadline, results are delivered through
+ * {@link SNTPClient.Listener} on the engine thread, so listeners must be quick and hop threads themselves for UI work.
+ * <p>
+ * Host names are resolved before a request reaches the engine: cached ones right in the caller, cold ones on the
+ * {@link TimeExecutor#ioScheduler()}. The engine thread itself never waits on DNS, so one slow lookup can't hold up
+ * the other requests in flight. The lookup counts against the request's deadline.
+ * <p>
+ * Sample usage:
+ * <pre>SntpEngine.getDefault().request("time.google.com", 5000, listener);</pre>
+ */
+public final class SntpEngine {
+
+    private static final String THREAD_NAME = "sntp-engine";
+
+    private static volatile SntpEngine sDefault;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final HostResolver resolver;
+    // handed over from callers to the engine thread
+    private final ConcurrentLinkedQueue<Request> submitted = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Request> cancelled = new ConcurrentLinkedQueue<>();
+    // only touched by the engine thread, ordered by deadline
+    private final PriorityQueue<Request> deadlines = new PriorityQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * Result of one request, called on the engine thread. Stats, metrics and the {@link NetworkClock} are already
+     * updated when it's called.
+     */
+    interface Callback {
+        /**
+         * @param sample      the answer
+         * @param resolveTime milliseconds spent resolving the host name, 0 when it came from the cache
+         */
+        void onSample(NtpSample sample, long resolveTime);
+
+        /**
+         * @param requestTime time at which the request was sent
+         * @param e           why it failed, a {@link SocketTimeoutException} when the deadline passed
+         */
+        void onError(long requestTime, Exception e);
+    }
+
+    /**
+     * One request in flight
+     */
+    private static final class Request implements Comparable<Request> {
+        final String host;
+        final int port;
+        final long deadline;//System.nanoTime() based
+        final Callback callback;
+        final ByteBuffer buffer = ByteBuffer.allocate(NtpCodec.NTP_PACKET_SIZE);
+        // set before the request is submitted to the engine, exactly one of them
+        InetAddress address;
+        Exception resolveError;
+        DatagramChannel channel;
+        long requestTime = System.currentTimeMillis();
+        long requestTicks;
+        long resolveTime;
+        long sentTimeStamp;
+        boolean done;
+
+        Request(String host, int port, int timeout, Callback callback) {
+            this.host = host;
+            this.port = port;
+            this.deadline = System.nanoTime() + timeout * 1000000L;
+            this.callback = callback;
+        }
+
+        @Override
+        public int compareTo(Request other) {
+            return Long.compare(deadline - other.deadline, 0);//overflow safe for nanoTime
+        }
+    }
+
+    /**
+     * Opens the selector and starts the engine thread
+     *
+     * @throws IOException if the selector can't be opened
+     */
+    public SntpEngine() throws IOException {
+        this(HostResolver.getInstance());
+    }
+
+    /**
+     * @param resolver DNS cache the host names are resolved with
+     */
+    SntpEngine(HostResolver resolver) throws IOException {
+        this.resolver = resolver;
+        selector = Selector.open();
+        thread = new Thread(this::loop, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return process wide engine, created on first use
+     */
+    public static SntpEngine getDefault() throws IOException {
+        SntpEngine engine = sDefault;
+        if (engine == null) {
+            synchronized (SntpEngine.class) {
+                engine = sDefault;
+                if (engine == null) {
+                    engine = new SntpEngine();
+                    sDefault = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Queues an SNTP request to the standard NTP port, never blocks the caller
+     *
+     * @param host     host name of the server
+     * @param timeout  milliseconds until the listener gets a {@link SocketTimeoutException}
+     * @param listener called on the engine thread
+     */
+    public void request(String host, int timeout, SNTPClient.Listener listener) {
+        request(host, SNTPClient.NTP_PORT, timeout, listener);
+    }
+
+    /**
+     * Queues an SNTP request, never blocks the caller
+     *
+     * @param host     host name of the server
+     * @param port     udp port of the server
+     * @param timeout  milliseconds until the listener gets a {@link SocketTimeoutException}
+     * @param listener called on the engine thread
+     */
+    public void request(String host, int port, int timeout, SNTPClient.Listener listener) {
+        request(host, port, timeout, new Callback() {
+            @Override
+            public void onSample(NtpSample sample, long resolveTime) {
+                listener.onTimeReceived(sample.getRequestTime(), sample.getNtpTime(), sample.getClockOffset());
+            }
+
+            @Override
+            public void onError(long requestTime, Exception e) {
+                listener.onError(requestTime, e);
+            }
+        });
+    }
+
+    /**
+     * Queues an SNTP request, never blocks the caller
+     *
+     * @param host     host name of the server
+     * @param port     udp port of the server
+     * @param timeout  milliseconds until the callback gets a {@link SocketTimeoutException}
+     * @param callback called on the engine thread, unless the request is cancelled first
+     * @return cancels the request: its channel is closed and the callback is never called
+     */
+    Cancellable request(String host, int port, int timeout, Callback callback) {
+        if (!running) {
+            callback.onError(System.currentTimeMillis(), new IOException("sntp engine is shut down"));
+            return () -> {
+            };
+        }
+        Request request = new Request(host, port, timeout, callback);
+        if (resolver.isCached(host)) {
+            resolveAndSubmit(request);//served from the cache, doesn't block the caller
+        } else {
+            TimeExecutor.ioScheduler().scheduleDirect(() -> resolveAndSubmit(request));
+        }
+        return () -> {
+            cancelled.add(request);//closed on the engine thread, which owns the request
+            selector.wakeup();
+        };
+    }
+
+    /**
+     * Resolves the host of the request (blocking on a cache miss) and hands the request to the engine thread
+     */
+    private void resolveAndSubmit(Request request) {
+        long resolveTicks = Ticks.elapsedRealtime();
+        try {
+            request.address = resolver.resolve(request.host);
+        } catch (IOException e) {
+            request.resolveError = e;//reported by the engine thread like every other failure
+        }
+        request.resolveTime = Ticks.elapsedRealtime() - resolveTicks;
+        submitted.add(request);
+        selector.wakeup();
+        if (!running) {
+            // shut down while resolving, the engine loop may already be gone
+            Request orphan;
+            while ((orphan = submitted.poll()) != null) {
+                fail(orphan, new IOException("sntp engine is shut down"));
+            }
+        }
+    }
+
+    /**
+     * Stops the engine thread, requests in flight fail
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * @return number of requests the engine is waiting on, only accurate on the engine thread
+     */
+    int inFlight() {
+        return selector.keys().size();
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                closeCancelled();
+                startSubmitted();
+                selector.select(selectTimeout());
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        read((Request) key.attachment());
+                    }
+                }
+                expire();
+            } catch (IOException e) {
+                Log.e(SNTPClient.TAG, "sntp engine select failed", e);
+            }
+        }
+        IOException shutdown = new IOException("sntp engine is shut down");
+        Request request;
+        while ((request = submitted.poll()) != null) {
+            fail(request, shutdown);
+        }
+        while ((request = deadlines.poll()) != null) {
+            fail(request, shutdown);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * @return milliseconds until the closest deadline, 0 means wait forever for select()
+     */
+    private long selectTimeout() {
+        Request next;
+        while ((next = deadlines.peek()) != null && next.done) {
+            deadlines.poll();//already answered, lazily dropped
+        }
+        if (next == null) {
+            return 0;
+        }
+        long millis = (next.deadline - System.nanoTime()) / 1000000L;
+        return Math.max(1, millis);
+    }
+
+    private void closeCancelled() {
+        Request request;
+        while ((request = cancelled.poll()) != null) {
+            if (!request.done) {
+                close(request);//still resolving or not started yet: done makes startSubmitted skip it
+                SntpMetrics.forServer(request.host).failure(new SocketTimeoutException("request cancelled"), true);
+            }
+        }
+    }
+
+    private void startSubmitted() {
+        Request request;
+        while ((request = submitted.poll()) != null) {
+            if (request.done) {
+                continue;//cancelled while resolving
+            }
+            if (request.resolveError != null) {
+                fail(request, request.resolveError);
+                continue;
+            }
+            if (request.deadline - System.nanoTime() <= 0) {
+                fail(request, new SocketTimeoutException("sntp request to " + request.host + " timed out resolving"));
+                continue;
+            }
+            try {
+                InetSocketAddress address = new InetSocketAddress(request.address, request.port);
+                DatagramChannel channel = DatagramChannel.open();
+                request.channel = channel;
+                channel.configureBlocking(false);
+                channel.connect(address);//connected channel ignores packets from other sources
+
+                byte[] buffer = request.buffer.array();
+                request.requestTime = System.currentTimeMillis();
+                request.requestTicks = Ticks.elapsedRealtime();
+                NtpCodec.writeRequest(buffer, request.requestTime);
+                request.sentTimeStamp = NtpCodec.readRaw64(buffer, NtpCodec.TRANSMIT_TIME_OFFSET);
+                request.buffer.clear();
+                channel.write(request.buffer);
+
+                channel.register(selector, SelectionKey.OP_READ, request);
+                deadlines.add(request);
+            } catch (Exception e) {
+                fail(request, e);
+            }
+        }
+    }
+
+    private void read(Request request) {
+        try {
+            request.buffer.clear();
+            int length = request.channel.read(request.buffer);
+            long responseTicks = Ticks.elapsedRealtime();
+            byte[] buffer = request.buffer.array();
+            if (!NtpCodec.isResponseTo(buffer, length, request.sentTimeStamp)) {
+                return;//stale or bogus packet, keep waiting until the deadline
+            }
+            NtpSample sample = NtpSample.fromResponse(request.host, buffer, request.requestTime, request.requestTicks, responseTicks);
+            close(request);
+            ServerStats.get(request.host).record(sample.getRoundTripTime());
+            SntpMetrics.forServer(request.host).success(request.resolveTime, sample.getRoundTripTime(), sample.getClockOffset());
+            NetworkClock.getInstance().update(sample);
+            try {
+                request.callback.onSample(sample, request.resolveTime);
+            } catch (RuntimeException e) {
+                Log.e(SNTPClient.TAG, "sntp listener failed", e);
+            }
+        } catch (IOException e) {
+            fail(request, e);
+        }
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        Request next;
+        while ((next = deadlines.peek()) != null && (next.done || next.deadline - now <= 0)) {
+            deadlines.poll();
+            if (!next.done) {
+                fail(next, new SocketTimeoutException("sntp request to " + next.host + " timed out"));
+            }
+        }
+    }
+
+    private void fail(Request request, Exception e) {
+        if (request.done) {
+            return;
+        }
+        close(request);
+        SntpMetrics.forServer(request.host).failure(e, false);
+        try {
+            request.callback.onError(request.requestTime, e);
+        } catch (RuntimeException listenerError) {
+            Log.e(SNTPClient.TAG, "sntp listener failed", listenerError);
+        }
+    }
+
+    private void close(Request request) {
+        request.done = true;
+        if (request.channel != null) {
+            try {
+                request.channel.close();//also cancels the selection key
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
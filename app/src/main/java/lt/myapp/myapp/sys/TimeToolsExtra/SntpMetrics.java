@@ -0,0 +1,155 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.io.PrintWriter;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per server instrumentation of time requests: dns time, round trip and offset histograms plus outcome counters.
+ * <p>
+ * Memory is fixed per server and recording never locks. Read it with {@link #snapshot()} or print it with
+ * {@link #dump(String, PrintWriter)}, MainActivity hooks the latter into
+ * <pre>adb shell dumpsys activity lt.myapp.myapp/.MainActivity</pre>
+ */
+public final class SntpMetrics {
+
+    private static final ConcurrentHashMap<String, Server> SERVERS = new ConcurrentHashMap<>();
+
+    /**
+     * Metrics of one server
+     */
+    public static final class Server {
+        final Histogram resolveTime = new Histogram();
+        final Histogram roundTrip = new Histogram();
+        // magnitude of the offset, the sign doesn't matter for spotting trouble
+        final Histogram offset = new Histogram();
+        final AtomicLong successes = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong cancels = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong hedges = new AtomicLong();
+
+        Server() {
+        }
+
+        void success(long resolveTime, long roundTrip, long offset) {
+            successes.incrementAndGet();
+            this.resolveTime.record(resolveTime);
+            this.roundTrip.record(roundTrip);
+            this.offset.record(Math.abs(offset));
+        }
+
+        void failure(Exception e, boolean cancelled) {
+            if (cancelled) {
+                cancels.incrementAndGet();
+            } else if (e instanceof SocketTimeoutException) {
+                timeouts.incrementAndGet();
+            } else {
+                errors.incrementAndGet();
+            }
+        }
+
+        void retry() {
+            retries.incrementAndGet();
+        }
+
+        void hedge() {
+            hedges.incrementAndGet();
+        }
+
+        Snapshot snapshot() {
+            return new Snapshot(resolveTime.snapshot(), roundTrip.snapshot(), offset.snapshot(),
+                    successes.get(), timeouts.get(), errors.get(), cancels.get(), retries.get(), hedges.get());
+        }
+    }
+
+    /**
+     * Immutable copy of one server's metrics
+     */
+    public static final class Snapshot {
+        public final Histogram.Snapshot resolveTime;
+        public final Histogram.Snapshot roundTrip;
+        public final Histogram.Snapshot offset;
+        public final long successes;
+        public final long timeouts;
+        public final long errors;
+        public final long cancels;
+        public final long retries;
+        public final long hedges;
+
+        Snapshot(Histogram.Snapshot resolveTime, Histogram.Snapshot roundTrip, Histogram.Snapshot offset,
+                 long successes, long timeouts, long errors, long cancels, long retries, long hedges) {
+            this.resolveTime = resolveTime;
+            this.roundTrip = roundTrip;
+            this.offset = offset;
+            this.successes = successes;
+            this.timeouts = timeouts;
+            this.errors = errors;
+            this.cancels = cancels;
+            this.retries = retries;
+            this.hedges = hedges;
+        }
+    }
+
+    private SntpMetrics() {
+    }
+
+    /**
+     * @return metrics of the host, created on first use
+     */
+    static Server forServer(String host) {
+        Server server = SERVERS.get(host);
+        if (server == null) {
+            Server created = new Server();
+            server = SERVERS.putIfAbsent(host, created);
+            if (server == null) {
+                server = created;
+            }
+        }
+        return server;
+    }
+
+    /**
+     * @return copy of every server's metrics, sorted by host
+     */
+    public static Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Server> entry : SERVERS.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Forgets everything recorded so far
+     */
+    public static void reset() {
+        SERVERS.clear();
+    }
+
+    /**
+     * Prints the metrics in a dumpsys friendly format
+     */
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("SNTP metrics (ms):");
+        for (Map.Entry<String, Snapshot> entry : snapshot().entrySet()) {
+            Snapshot s = entry.getValue();
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(entry.getKey());
+            writer.print(": ok=" + s.successes + " timeouts=" + s.timeouts + " errors=" + s.errors);
+            writer.println(" cancels=" + s.cancels + " retries=" + s.retries + " hedges=" + s.hedges);
+            writer.print(prefix);
+            writer.println("    dns       " + s.resolveTime);
+            writer.print(prefix);
+            writer.println("    roundTrip " + s.roundTrip);
+            writer.print(prefix);
+            writer.println("    |offset|  " + s.offset);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.SingleTransformer;
+
+/**
+ * Reactive face of the SNTP client, emits immutable {@link NtpSample}s instead of calling a listener.
+ * <p>
+ * Everything runs on the {@link TimeExecutor}, disposing cancels the exchange (see {@link TimeRequest}).
+ * Results are not moved to the main thread, add observeOn where the UI needs it.
+ * <pre>
+ * SntpRx.sample("time.google.com")
+ *         .compose(SntpRx.timeout(2000))
+ *         .compose(SntpRx.fallbackTo("time.cloudflare.com"))
+ *         .zipWith(paymentToken, Receipt::new)
+ * </pre>
+ */
+public final class SntpRx {
+
+    private static final int DEFAULT_TIMEOUT = 5000;//ms
+
+    // one background sync for every subscriber of samples()
+    private static final Flowable<NtpSample> SAMPLES = periodic(SNTPClient.DEFAULT_SERVERS,
+            TimeSyncScheduler.MIN_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+
+    private SntpRx() {
+    }
+
+    /**
+     * One sample from the server, hedged and retried like {@link SNTPClient#getDate(String, SNTPClient.Listener)}.
+     * Concurrent subscriptions to the same server share one exchange.
+     *
+     * @param host host name of the server
+     * @return sample, errors if the server didn't answer
+     */
+    public static Single<NtpSample> sample(String host) {
+        return sample(host, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param host    host name of the server
+     * @param timeout network timeout in milliseconds, also the upper bound of the history sized timeout
+     * @return sample, errors if the server didn't answer
+     */
+    public static Single<NtpSample> sample(String host, int timeout) {
+        return SNTPClient.requestShared(host, timeout).map(SNTPClient::getSample);
+    }
+
+    /**
+     * One sample from a pool of servers queried in parallel
+     *
+     * @param servers  pool of server host names
+     * @param mode     how the answer is picked
+     * @param deadline overall time budget in milliseconds
+     * @return sample, errors with SocketTimeoutException if no server answered in time
+     */
+    public static Single<NtpSample> sample(List<String> servers, SNTPClient.PoolMode mode, int deadline) {
+        return SNTPClient.requestFromPool(servers, mode, deadline)
+                .map(SNTPClient::getSample)
+                .switchIfEmpty(Single.error(() -> new SocketTimeoutException("no sntp server answered in " + deadline + " ms")));
+    }
+
+    /**
+     * Samples of the default servers, synced every {@link TimeSyncScheduler#MIN_POLL_INTERVAL}.
+     * <p>
+     * All subscribers share one sync, a new subscriber gets the latest sample right away.
+     * The sync stops when the last subscriber goes.
+     */
+    public static Flowable<NtpSample> samples() {
+        return SAMPLES;
+    }
+
+    /**
+     * Samples of the pool taken every period, the first one right away.
+     * <p>
+     * The stream is shared: one sync serves all subscribers and a late subscriber gets the latest sample.
+     * Syncs never overlap, ticks that come while one is running are skipped. Consumers slower than the period
+     * get the latest sample, older ones are dropped. A failed sync emits nothing, the stream never errors.
+     *
+     * @param servers pool of server host names
+     * @param period  time between syncs
+     * @param unit    unit of the period
+     */
+    public static Flowable<NtpSample> periodic(List<String> servers, long period, TimeUnit unit) {
+        int deadline = (int) Math.min(DEFAULT_TIMEOUT, unit.toMillis(period));
+        return Flowable.interval(0, period, unit, TimeExecutor.scheduler())
+                .onBackpressureDrop()
+                .concatMapMaybe(tick -> SNTPClient.requestFromPool(servers, SNTPClient.PoolMode.BEST_ROUND_TRIP, deadline)
+                        .map(SNTPClient::getSample)
+                        .onErrorComplete(), 1)
+                .onBackpressureLatest()
+                .replay(1)
+                .refCount();
+    }
+
+    /**
+     * Fails the sample with SocketTimeoutException if it doesn't arrive in time, the request is cancelled
+     *
+     * @param timeout time budget in milliseconds
+     */
+    public static SingleTransformer<NtpSample, NtpSample> timeout(long timeout) {
+        return upstream -> upstream.timeout(timeout, TimeUnit.MILLISECONDS, TimeExecutor.scheduler(),
+                Single.error(() -> new SocketTimeoutException("no sntp answer in " + timeout + " ms")));
+    }
+
+    /**
+     * On error asks the next server, in order, the last error is reported when all of them fail
+     *
+     * @param hosts fallback server host names
+     */
+    public static SingleTransformer<NtpSample, NtpSample> fallbackTo(String... hosts) {
+        return fallbackTo(Arrays.asList(hosts), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param hosts   fallback server host names
+     * @param timeout network timeout of each fallback request in milliseconds
+     */
+    public static SingleTransformer<NtpSample, NtpSample> fallbackTo(List<String> hosts, int timeout) {
+        return upstream -> {
+            Single<NtpSample> chain = upstream;
+            for (String host : hosts) {
+                chain = chain.onErrorResumeNext(error -> sample(host, timeout));
+            }
+            return chain;
+        };
+    }
+}
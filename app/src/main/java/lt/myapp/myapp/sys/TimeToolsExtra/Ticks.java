@@ -0,0 +1,43 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import android.os.SystemClock;
+
+/**
+ * Monotonic millisecond clock used for every NTP time reference in this package.
+ * <p>
+ * Reads SystemClock.elapsedRealtime() through a {@link Source}. Local unit tests run against the android.jar stub,
+ * which always answers 0, so they install a source backed by the JVM's monotonic clock instead.
+ */
+final class Ticks {
+
+    /**
+     * Where the ticks come from
+     */
+    interface Source {
+        /**
+         * @return milliseconds since an arbitrary but fixed origin, never going back
+         */
+        long elapsedRealtime();
+    }
+
+    static final Source SYSTEM_CLOCK = SystemClock::elapsedRealtime;
+
+    private static volatile Source sSource = SYSTEM_CLOCK;
+
+    private Ticks() {
+    }
+
+    /**
+     * @param source clock every later call reads, {@link #SYSTEM_CLOCK} outside of tests
+     */
+    static void setSource(Source source) {
+        sSource = source;
+    }
+
+    /**
+     * @return milliseconds since boot (or since the origin of the installed source)
+     */
+    static long elapsedRealtime() {
+        return sSource.elapsedRealtime();
+    }
+}
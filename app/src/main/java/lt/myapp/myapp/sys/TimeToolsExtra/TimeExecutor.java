@@ -0,0 +1,113 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
+import lt.myapp.myapp.sys.Watchdog.MainThreadPosts;
+
+/**
+ * Shared, bounded pools for all time related work.
+ * <p>
+ * Two pools, so bookkeeping never queues behind a blocked thread: {@link #scheduler()} runs the short work (timers,
+ * hedges, retries, handing results over), {@link #ioScheduler()} the blocking work (dns lookups, bursts, sample
+ * storage). At most {@link #MAX_THREADS} and {@link #MAX_IO_THREADS} named daemon threads exist, extra work waits in
+ * the queue instead of creating threads. Idle threads die after {@link #KEEP_ALIVE_SECONDS}.
+ */
+public final class TimeExecutor {
+
+    public static final int MAX_THREADS = 4;
+    public static final int MAX_IO_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor EXECUTOR = newPool("sntp-", MAX_THREADS);
+    private static final Scheduler SCHEDULER = Schedulers.from(EXECUTOR);
+    private static final ThreadPoolExecutor IO_EXECUTOR = newPool("sntp-io-", MAX_IO_THREADS);
+    private static final Scheduler IO_SCHEDULER = Schedulers.from(IO_EXECUTOR);
+
+    private static final Executor MAIN_THREAD = command -> {
+        MainThreadPosts.record(command);//stall reports name the thread that queued the work
+        AndroidSchedulers.mainThread().scheduleDirect(command);
+    };
+    private static final Executor DIRECT = Runnable::run;
+
+    private TimeExecutor() {
+    }
+
+    private static ThreadPoolExecutor newPool(String prefix, int threads) {
+        ThreadFactory factory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return the bookkeeping executor itself, never block on it
+     */
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * @return RxJava scheduler running on the bookkeeping executor, never block on it
+     */
+    public static Scheduler scheduler() {
+        return SCHEDULER;
+    }
+
+    /**
+     * @return the executor for blocking work
+     */
+    public static Executor io() {
+        return IO_EXECUTOR;
+    }
+
+    /**
+     * @return RxJava scheduler running on the executor for blocking work
+     */
+    public static Scheduler ioScheduler() {
+        return IO_SCHEDULER;
+    }
+
+    /**
+     * Callback executor for listeners touching the UI, always posts to the main looper (even from the main thread)
+     *
+     * @return executor running on the main thread
+     */
+    public static Executor mainThread() {
+        return MAIN_THREAD;
+    }
+
+    /**
+     * Callback executor running the listener right on the thread that finished the work, usually an sntp-N
+     * worker. For short, thread safe listeners that shouldn't queue behind the main looper.
+     *
+     * @return executor running in place
+     */
+    public static Executor direct() {
+        return DIRECT;
+    }
+
+    /**
+     * @return number of threads alive in both pools right now
+     */
+    public static int getPoolSize() {
+        return EXECUTOR.getPoolSize() + IO_EXECUTOR.getPoolSize();
+    }
+}
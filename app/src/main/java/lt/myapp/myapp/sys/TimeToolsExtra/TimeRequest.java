@@ -0,0 +1,167 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import io.reactivex.MaybeObserver;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+
+/**
+ * Handle of a time request started by {@link SNTPClient} or {@link NetworkClock}.
+ * <p>
+ * Disposing it cancels the request (the socket is closed right away when nobody else shares the request)
+ * and drops the listener, so a screen that went away is never called back and can be collected.
+ * The listener gets at most one callback, on the executor given when the request was started
+ * (see {@link TimeExecutor#mainThread()} and {@link TimeExecutor#direct()}).
+ * <pre>SNTPClient.getDate("time.google.com", listener).bindTo(activity);</pre>
+ */
+public final class TimeRequest implements Disposable {
+
+    private static final Disposable DISPOSED = Disposables.disposed();
+
+    private final AtomicReference<Disposable> upstream = new AtomicReference<>();
+    private final AtomicReference<SNTPClient.Listener> listener;
+    private final Executor callbackExecutor;
+    private final long requestTime;
+
+    // lifecycle we are bound to, the observer is removed once the request is over
+    private volatile Lifecycle lifecycle;
+    private volatile LifecycleEventObserver lifecycleObserver;
+
+    TimeRequest(SNTPClient.Listener listener, Executor callbackExecutor, long requestTime) {
+        this.listener = new AtomicReference<>(listener);
+        this.callbackExecutor = callbackExecutor;
+        this.requestTime = requestTime;
+    }
+
+    /**
+     * Cancels the request when the owner is destroyed
+     *
+     * @param owner activity, fragment or any other lifecycle owner
+     * @return this handle
+     */
+    public TimeRequest bindTo(LifecycleOwner owner) {
+        return bindTo(owner.getLifecycle(), Lifecycle.Event.ON_DESTROY);
+    }
+
+    /**
+     * Cancels the request on the given lifecycle event, must be called on the main thread like any lifecycle observer.
+     * A lifecycle that is already destroyed cancels it right away.
+     *
+     * @param lifecycle lifecycle to follow
+     * @param cancelOn  event that cancels the request, e.g. ON_STOP for work only needed while visible
+     * @return this handle
+     */
+    public TimeRequest bindTo(Lifecycle lifecycle, Lifecycle.Event cancelOn) {
+        if (listener.get() == null) {//delivered or cancelled already
+            return this;
+        }
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            dispose();
+            return this;
+        }
+        LifecycleEventObserver observer = (source, event) -> {
+            if (event == cancelOn) {
+                dispose();
+            }
+        };
+        this.lifecycleObserver = observer;
+        this.lifecycle = lifecycle;
+        lifecycle.addObserver(observer);
+        return this;
+    }
+
+    @Override
+    public void dispose() {
+        listener.set(null);
+        Disposable current = upstream.getAndSet(DISPOSED);
+        if (current != null && current != DISPOSED) {
+            current.dispose();
+        }
+        unbind();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return upstream.get() == DISPOSED;
+    }
+
+    /**
+     * Attaches the work this handle cancels, work attached after dispose() is cancelled at once
+     */
+    void setUpstream(Disposable disposable) {
+        if (!upstream.compareAndSet(null, disposable)) {
+            disposable.dispose();
+        }
+    }
+
+    void onTimeReceived(long requestTime, long serverTime, long offset) {
+        upstream.set(DISPOSED);//nothing left to cancel, only marks the handle done
+        // the listener is taken on the callback thread, so a dispose() (or lifecycle end) while the callback
+        // is queued still drops it
+        callbackExecutor.execute(() -> {
+            SNTPClient.Listener current = listener.getAndSet(null);
+            unbind();
+            if (current != null) {
+                current.onTimeReceived(requestTime, serverTime, offset);
+            }
+        });
+    }
+
+    void onError(Exception ex) {
+        upstream.set(DISPOSED);
+        callbackExecutor.execute(() -> {
+            SNTPClient.Listener current = listener.getAndSet(null);
+            unbind();
+            if (current != null) {
+                current.onError(requestTime, ex);
+            }
+        });
+    }
+
+    /**
+     * Observer delivering a request's outcome to this handle, empty means no server answered
+     *
+     * @param emptyError error reported when the request completes without an answer
+     */
+    MaybeObserver<SNTPClient> observer(Exception emptyError) {
+        return new MaybeObserver<SNTPClient>() {
+            @Override
+            public void onSubscribe(Disposable d) {
+                setUpstream(d);
+            }
+
+            @Override
+            public void onSuccess(SNTPClient sntpClient) {
+                onTimeReceived(sntpClient.getRequestTime(), sntpClient.getNtpTime(), sntpClient.getClockOffset());
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                TimeRequest.this.onError(e instanceof Exception ? (Exception) e : new Exception(e));
+            }
+
+            @Override
+            public void onComplete() {
+                TimeRequest.this.onError(emptyError);
+            }
+        };
+    }
+
+    private void unbind() {
+        Lifecycle bound = lifecycle;
+        LifecycleEventObserver observer = lifecycleObserver;
+        if (bound == null || observer == null) {
+            return;
+        }
+        lifecycle = null;
+        lifecycleObserver = null;
+        // lifecycle observers may only be touched on the main thread, callbacks can run on any executor
+        AndroidSchedulers.mainThread().scheduleDirect(() -> bound.removeObserver(observer));
+    }
+}
@@ -0,0 +1,109 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Keeps syncing network time in the background and feeds the samples to a {@link ClockDriftEstimator}.
+ * <p>
+ * The poll interval starts short and doubles every time a new sample agrees with the prediction,
+ * a sample outside the error bound (or a failed sync) brings it back to the minimum.
+ * Callers read {@link #getEstimate()} and never wait on the network.
+ */
+public final class TimeSyncScheduler {
+
+    public static final long MIN_POLL_INTERVAL = 64 * 1000L;
+    public static final long MAX_POLL_INTERVAL = 4096 * 1000L;
+    private static final int SYNC_DEADLINE = 5000;//ms
+
+    private static final TimeSyncScheduler INSTANCE = new TimeSyncScheduler();
+
+    private final ClockDriftEstimator estimator = new ClockDriftEstimator();
+    private volatile List<String> servers = SNTPClient.DEFAULT_SERVERS;
+    private long pollInterval = MIN_POLL_INTERVAL;
+    private Disposable pending;
+    private boolean started;
+
+    private TimeSyncScheduler() {
+    }
+
+    public static TimeSyncScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param servers pool of servers used when syncing
+     */
+    public void setServers(List<String> servers) {
+        this.servers = servers;
+    }
+
+    /**
+     * @return latest clock estimate or null until the first sync succeeds
+     */
+    public ClockDriftEstimator.Estimate getEstimate() {
+        return estimator.getEstimate();
+    }
+
+    /**
+     * @return milliseconds between syncs at the moment
+     */
+    public synchronized long getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * Starts syncing right away, calling it again while running does nothing
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        schedule(0);
+    }
+
+    /**
+     * Stops syncing, the estimate stays available
+     */
+    public synchronized void stop() {
+        started = false;
+        if (pending != null) {
+            pending.dispose();
+            pending = null;
+        }
+    }
+
+    private synchronized void schedule(long delay) {
+        if (!started) {
+            return;
+        }
+        pending = SNTPClient.requestFromPool(servers, SNTPClient.PoolMode.BEST_ROUND_TRIP, SYNC_DEADLINE)
+                .delaySubscription(delay, TimeUnit.MILLISECONDS, TimeExecutor.scheduler())
+                .subscribe(
+                        sntpClient -> onSample(sntpClient.getSample()),
+                        throwable -> onFailure(throwable),
+                        () -> onFailure(null));
+    }
+
+    private synchronized void onSample(NtpSample sample) {
+        ClockDriftEstimator.Estimate previous = estimator.getEstimate();
+        if (previous != null) {
+            long error = Math.abs(sample.getNtpTime() - previous.timeAt(sample.getNtpTimeReference()));
+            boolean agrees = error <= previous.uncertaintyAt(sample.getNtpTimeReference()) + sample.getRoundTripTime() / 2;
+            pollInterval = agrees ? Math.min(MAX_POLL_INTERVAL, pollInterval * 2) : MIN_POLL_INTERVAL;
+        }
+        estimator.add(sample);
+        schedule(pollInterval);
+    }
+
+    private synchronized void onFailure(Throwable throwable) {
+        Log.w(SNTPClient.TAG, "background time sync failed", throwable);
+        pollInterval = MIN_POLL_INTERVAL;
+        schedule(pollInterval);
+    }
+}
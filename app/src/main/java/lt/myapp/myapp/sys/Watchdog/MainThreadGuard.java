@@ -0,0 +1,127 @@
+package lt.myapp.myapp.sys.Watchdog;
+
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread confinement guard for blocking entry points (network, disk, heavy JSON) that must stay off the main thread.
+ * <p>
+ * On the right thread a check is one volatile read and a reference compare. On the main thread it throws in strict
+ * mode (debug builds, see MainActivity) and otherwise counts the violation per entry point, logging the stack of the
+ * first one and then of every {@link #DEFAULT_SAMPLE_RATE}th.
+ */
+public final class MainThreadGuard {
+
+    private static final String TAG = "MainThreadGuard";
+
+    public static final int DEFAULT_SAMPLE_RATE = 100;
+
+    // null where there is no main looper (local unit tests), nothing is ever a violation then
+    private static volatile Thread sMainThread = mainThread();
+    private static volatile boolean sStrict = false;
+    private static volatile int sSampleRate = DEFAULT_SAMPLE_RATE;
+
+    private static final ConcurrentHashMap<String, AtomicLong> VIOLATIONS = new ConcurrentHashMap<>();
+    private static volatile Throwable sLastSampled;
+
+    private MainThreadGuard() {
+    }
+
+    private static Thread mainThread() {
+        Looper looper = Looper.getMainLooper();
+        return looper != null ? looper.getThread() : null;
+    }
+
+    /**
+     * @param strict true to throw on a violation, for debug builds
+     */
+    public static void setStrict(boolean strict) {
+        sStrict = strict;
+    }
+
+    /**
+     * @param sampleRate a stack is logged for the first violation and then every sampleRate-th one of an entry point
+     */
+    public static void setSampleRate(int sampleRate) {
+        sSampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * Fails (strict) or records (otherwise) a call made on the main thread
+     *
+     * @param entryPoint name of the guarded call, e.g. "SNTPClient.requestTime"
+     * @throws IllegalStateException in strict mode on the main thread
+     */
+    public static void checkNotMain(String entryPoint) {
+        if (Thread.currentThread() != sMainThread) {
+            return;
+        }
+        violation(entryPoint);
+    }
+
+    private static void violation(String entryPoint) {
+        if (sStrict) {
+            throw new IllegalStateException(entryPoint + " blocks, it must not run on the main thread");
+        }
+        AtomicLong count = VIOLATIONS.get(entryPoint);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = VIOLATIONS.putIfAbsent(entryPoint, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        long n = count.incrementAndGet();
+        if ((n - 1) % sSampleRate == 0) {
+            Throwable stack = new Throwable(entryPoint + " called on the main thread (violation " + n + ")");
+            sLastSampled = stack;
+            Log.w(TAG, stack.getMessage(), stack);
+        }
+    }
+
+    /**
+     * @return violations by entry point since start
+     */
+    public static Map<String, Long> getViolations() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : VIOLATIONS.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Prints the violation counters and the last sampled stack, see MainActivity.dump
+     */
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Main thread guard: strict=" + sStrict + " sampleRate=" + sSampleRate);
+        for (Map.Entry<String, Long> entry : getViolations().entrySet()) {
+            writer.println(prefix + "  " + entry.getKey() + " violations=" + entry.getValue());
+        }
+        Throwable last = sLastSampled;
+        if (last != null) {
+            writer.println(prefix + "  last: " + last.getMessage());
+            for (StackTraceElement element : last.getStackTrace()) {
+                writer.println(prefix + "    at " + element);
+            }
+        }
+    }
+
+    static void setMainThread(Thread thread) {
+        sMainThread = thread;
+    }
+
+    static void reset() {
+        sMainThread = mainThread();
+        sStrict = false;
+        sSampleRate = DEFAULT_SAMPLE_RATE;
+        VIOLATIONS.clear();
+        sLastSampled = null;
+    }
+}
@@ -0,0 +1,53 @@
+package lt.myapp.myapp.sys.Watchdog;
+
+/**
+ * Remembers which thread last handed work to the main thread, so a stall report can say who queued it.
+ * <p>
+ * Recording is a few volatile writes, cheap enough for every post. Posting paths of the app call
+ * {@link #record(Object)}, see TimeExecutor.mainThread().
+ */
+public final class MainThreadPosts {
+
+    private static volatile String sThread;
+    private static volatile String sTask;
+    private static volatile long sTime;//System.nanoTime() of the post
+
+    private MainThreadPosts() {
+    }
+
+    /**
+     * Notes that the calling thread is about to post the task to the main thread
+     *
+     * @param task runnable (or anything identifying the work) being posted
+     */
+    public static void record(Object task) {
+        sThread = Thread.currentThread().getName();
+        sTask = task.getClass().getName();
+        sTime = System.nanoTime();
+    }
+
+    /**
+     * @return "thread posted task N ms ago", or null if nothing was posted yet
+     */
+    static String describeLast() {
+        String thread = sThread;
+        if (thread == null) {
+            return null;
+        }
+        long ago = (System.nanoTime() - sTime) / 1000000L;
+        return thread + " posted " + sTask + " " + ago + " ms ago";
+    }
+
+    /**
+     * @return name of the thread that posted last, null if none
+     */
+    static String getLastThread() {
+        return sThread;
+    }
+
+    static void reset() {
+        sThread = null;
+        sTask = null;
+        sTime = 0;
+    }
+}
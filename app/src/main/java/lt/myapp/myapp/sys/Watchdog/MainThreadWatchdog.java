@@ -0,0 +1,227 @@
+package lt.myapp.myapp.sys.Watchdog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects main thread stalls long before the system shows its ANR dialog.
+ * <p>
+ * A daemon thread posts a tick to the main looper every {@link #DEFAULT_INTERVAL} ms. When a tick waits longer than
+ * {@link #DEFAULT_THRESHOLD} ms a report is written to a {@link StallReportRing}. It holds the main thread stack, the
+ * thread that last posted work to the main thread ({@link MainThreadPosts}) and the stacks of all threads. One report
+ * per stall, the next one comes after the main thread ran a tick again.
+ * <pre>MainThreadWatchdog.install(new File(getFilesDir(), "stalls"));</pre>
+ */
+public final class MainThreadWatchdog {
+
+    private static final String TAG = "MainThreadWatchdog";
+
+    public static final long DEFAULT_INTERVAL = 500;//ms
+    public static final long DEFAULT_THRESHOLD = 2000;//ms, the system ANR comes at 5000
+
+    private static MainThreadWatchdog sInstance;
+
+    /**
+     * Monotonic clock the waits are measured with, System::nanoTime outside of tests
+     */
+    interface Clock {
+        long nanoTime();
+    }
+
+    /**
+     * Pause between two rounds of the watch loop, Thread::sleep outside of tests
+     */
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private final Executor mainThread;
+    private final Thread mainThreadRef;
+    private final StallReportRing ring;
+    private final long interval;
+    private final long threshold;
+    private final Clock clock;
+    private final Sleeper sleeper;
+
+    // clock time of the tick waiting on the main thread, 0 when none is waiting
+    private volatile long pendingSince;
+    private final AtomicLong stalls = new AtomicLong();
+    private volatile File lastReport;
+    private volatile Thread thread;
+    // a report was written for the tick waiting now, only touched by the watching thread
+    private boolean reported;
+
+    private final Runnable tick = () -> pendingSince = 0;
+
+    /**
+     * Starts the process wide watchdog on the main looper, calling it again does nothing
+     *
+     * @param reportDir where stall reports are kept
+     * @return the watchdog
+     */
+    public static synchronized MainThreadWatchdog install(File reportDir) {
+        if (sInstance == null) {
+            Handler handler = new Handler(Looper.getMainLooper());
+            sInstance = new MainThreadWatchdog(handler::post, Looper.getMainLooper().getThread(),
+                    new StallReportRing(reportDir), DEFAULT_INTERVAL, DEFAULT_THRESHOLD);
+            sInstance.start();
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the installed watchdog or null
+     */
+    public static synchronized MainThreadWatchdog getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * @param mainThread    posts to the watched thread
+     * @param mainThreadRef the watched thread, its stack leads the report
+     * @param ring          where reports go
+     * @param interval      ms between ticks
+     * @param threshold     ms a tick may wait before it's a stall
+     */
+    MainThreadWatchdog(Executor mainThread, Thread mainThreadRef, StallReportRing ring, long interval, long threshold) {
+        this(mainThread, mainThreadRef, ring, interval, threshold, System::nanoTime, Thread::sleep);
+    }
+
+    /**
+     * @param clock   measures how long a tick waits
+     * @param sleeper waits between two rounds of the watch loop
+     */
+    MainThreadWatchdog(Executor mainThread, Thread mainThreadRef, StallReportRing ring, long interval, long threshold,
+                       Clock clock, Sleeper sleeper) {
+        this.mainThread = mainThread;
+        this.mainThreadRef = mainThreadRef;
+        this.ring = ring;
+        this.interval = interval;
+        this.threshold = threshold;
+        this.clock = clock;
+        this.sleeper = sleeper;
+    }
+
+    synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::watch, "main-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * @return stalls detected since start
+     */
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    /**
+     * @return reports kept on disk, oldest first
+     */
+    public File[] getReports() {
+        return ring.list();
+    }
+
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            check();
+            try {
+                sleeper.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * One round of the watch loop: posts a tick when none is waiting, otherwise reports the waiting one once it's
+     * past the threshold
+     */
+    void check() {
+        long since = pendingSince;
+        if (since == 0) {
+            reported = false;
+            pendingSince = clock.nanoTime();
+            mainThread.execute(tick);
+        } else if (!reported) {
+            long waited = (clock.nanoTime() - since) / 1000000L;
+            if (waited >= threshold) {
+                reported = true;
+                report(waited);
+            }
+        }
+    }
+
+    private void report(long waited) {
+        stalls.incrementAndGet();
+        String report = buildReport(waited);
+        Log.w(TAG, "main thread stalled for " + waited + " ms, last post: " + MainThreadPosts.describeLast());
+        File file = ring.write(report);
+        if (file != null) {
+            lastReport = file;
+        }
+    }
+
+    String buildReport(long waited) {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("main thread stalled for at least " + waited + " ms");
+        writer.println("at " + new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ", Locale.US).format(new Date()));
+        String lastPost = MainThreadPosts.describeLast();
+        writer.println("last post: " + (lastPost != null ? lastPost : "none"));
+        writer.println();
+
+        writer.println("\"" + mainThreadRef.getName() + "\" " + mainThreadRef.getState());
+        printStack(writer, mainThreadRef.getStackTrace());
+        writer.println();
+
+        for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+            Thread other = entry.getKey();
+            if (other == mainThreadRef || other == Thread.currentThread()) {
+                continue;
+            }
+            writer.println("\"" + other.getName() + "\" " + other.getState());
+            printStack(writer, entry.getValue());
+            writer.println();
+        }
+        writer.flush();
+        return out.toString();
+    }
+
+    private static void printStack(PrintWriter writer, StackTraceElement[] stack) {
+        for (StackTraceElement element : stack) {
+            writer.println("    at " + element);
+        }
+    }
+
+    /**
+     * Prints the watchdog state, see MainActivity.dump
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Main thread watchdog: interval=" + interval + "ms threshold=" + threshold + "ms");
+        File last = lastReport;
+        writer.println(prefix + "  stalls=" + stalls.get() + " reports=" + ring.list().length
+                + (last != null ? " last=" + last.getName() : ""));
+    }
+}
@@ -0,0 +1,105 @@
+package lt.myapp.myapp.sys.Watchdog;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Bounded on-disk ring of stall reports: at most {@code capacity} files of at most {@code maxReportSize} bytes.
+ * <p>
+ * Reports are named stall-SEQUENCE.txt, writing a new one deletes the oldest once the ring is full. The sequence
+ * continues from the files already there, so reports survive restarts and crashes. Writing blocks, call it off
+ * the main thread.
+ */
+public final class StallReportRing {
+
+    private static final String TAG = "StallReportRing";
+    private static final String PREFIX = "stall-";
+    private static final String SUFFIX = ".txt";
+
+    public static final int DEFAULT_CAPACITY = 8;
+    public static final int DEFAULT_MAX_REPORT_SIZE = 64 * 1024;
+
+    private final File dir;
+    private final int capacity;
+    private final int maxReportSize;
+    private long nextSequence = -1;
+
+    /**
+     * @param dir where the reports are kept, usually a folder in context.getFilesDir()
+     */
+    public StallReportRing(File dir) {
+        this(dir, DEFAULT_CAPACITY, DEFAULT_MAX_REPORT_SIZE);
+    }
+
+    /**
+     * @param dir           where the reports are kept
+     * @param capacity      number of reports kept
+     * @param maxReportSize longer reports are cut to this many bytes
+     */
+    public StallReportRing(File dir, int capacity, int maxReportSize) {
+        this.dir = dir;
+        this.capacity = capacity;
+        this.maxReportSize = maxReportSize;
+    }
+
+    /**
+     * Writes the report as the newest one and drops the oldest reports beyond the capacity
+     *
+     * @return the file written or null if it couldn't be written
+     */
+    public synchronized File write(String report) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "can't create " + dir);
+            return null;
+        }
+        File[] reports = list();
+        if (nextSequence < 0) {
+            nextSequence = reports.length == 0 ? 0 : sequenceOf(reports[reports.length - 1]) + 1;
+        }
+        for (int i = 0; i <= reports.length - capacity; i++) {
+            if (!reports[i].delete()) {
+                Log.w(TAG, "can't delete " + reports[i]);
+            }
+        }
+
+        byte[] bytes = report.getBytes(StandardCharsets.UTF_8);
+        File file = new File(dir, PREFIX + nextSequence++ + SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bytes, 0, Math.min(bytes.length, maxReportSize));
+        } catch (IOException e) {
+            Log.w(TAG, "can't write " + file, e);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * @return the reports kept, oldest first
+     */
+    public synchronized File[] list() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX)
+                && sequenceOf(name) >= 0);
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        return files;
+    }
+
+    private static long sequenceOf(File file) {
+        return sequenceOf(file.getName());
+    }
+
+    private static long sequenceOf(String name) {
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
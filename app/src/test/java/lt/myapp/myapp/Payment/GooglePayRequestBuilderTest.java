@@ -0,0 +1,86 @@
+package lt.myapp.myapp.Payment;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GooglePayRequestBuilderTest {
+
+    // what android's insertion ordered org.json writes for PaymentRequests.getPaymentDataRequest("12.34")
+    private static final String DEFAULT_PAYMENT_DATA_REQUEST = "{\"apiVersion\":2,\"apiVersionMinor\":0,"
+            + "\"allowedPaymentMethods\":[{\"type\":\"CARD\",\"parameters\":{"
+            + "\"allowedAuthMethods\":[\"PAN_ONLY\",\"CRYPTOGRAM_3DS\"],"
+            + "\"allowedCardNetworks\":[\"AMEX\",\"DISCOVER\",\"INTERAC\",\"JCB\",\"MASTERCARD\",\"VISA\"],"
+            + "\"billingAddressRequired\":true,\"billingAddressParameters\":{\"format\":\"FULL\"}},"
+            + "\"tokenizationSpecification\":{\"type\":\"PAYMENT_GATEWAY\",\"parameters\":{"
+            + "\"gateway\":\"example\",\"gatewayMerchantId\":\"exampleGatewayMerchantId\"}}}],"
+            + "\"transactionInfo\":{\"totalPrice\":\"12.34\",\"totalPriceStatus\":\"FINAL\","
+            + "\"countryCode\":\"LT\",\"currencyCode\":\"EUR\"},"
+            + "\"merchantInfo\":{\"merchantName\":\"Example Merchant\"}}";
+
+    private static final PaymentConfig ESCAPED = new PaymentConfig(
+            "Shop \"\u0104\u017euolas\" </script>\\ \t\n\u0001\u001f\u2028", "adyen", "a/b", "DE", "USD");
+
+    // the maven org.json orders keys by hash, so parity with the JSONObject path is structural here
+    private static void assertSameDocument(JSONObject expected, CharSequence actual) {
+        JSONObject parsed = new JSONObject(actual.toString());
+        assertTrue(actual + "\n!=\n" + expected, expected.similar(parsed));
+    }
+
+    @Test
+    public void paymentDataRequest_matchesJsonObjectPath() {
+        GooglePayRequestBuilder builder = new GooglePayRequestBuilder().config(PaymentConfig.DEFAULT);
+        for (String price : new String[]{"0.00", "12.34", "-2.50", "92233720368547.76"}) {
+            assertSameDocument(PaymentRequests.getPaymentDataRequest(price),
+                    builder.totalPrice(price).writePaymentDataRequest());
+        }
+    }
+
+    @Test
+    public void paymentDataRequest_inInsertionOrder() {
+        assertEquals(DEFAULT_PAYMENT_DATA_REQUEST,
+                new GooglePayRequestBuilder().totalPrice("12.34").config(PaymentConfig.DEFAULT).paymentDataRequest());
+    }
+
+    @Test
+    public void paymentDataRequest_escapesValues() {
+        String json = new GooglePayRequestBuilder().config(ESCAPED).totalPrice("1\"2").paymentDataRequest();
+        assertSameDocument(PaymentRequests.getPaymentDataRequest("1\"2", ESCAPED), json);
+        assertTrue(json, json.contains("<\\/script>\\\\ \\t\\n\\u0001\\u001f\u2028"));
+    }
+
+    @Test
+    public void isReadyToPayRequest_matchesJsonObjectPath() {
+        assertSameDocument(PaymentRequests.getIsReadyToPayRequest(),
+                new GooglePayRequestBuilder().writeIsReadyToPayRequest());
+    }
+
+    @Test
+    public void builder_reusesBufferBetweenDocuments() {
+        GooglePayRequestBuilder builder = new GooglePayRequestBuilder().config(PaymentConfig.DEFAULT);
+        String ready = builder.isReadyToPayRequest();
+        builder.totalPrice("1.00").writePaymentDataRequest();
+        assertEquals(ready, builder.isReadyToPayRequest());
+    }
+
+    @Test
+    public void withoutBillingAddress() {
+        JSONObject parameters = new JSONObject(new GooglePayRequestBuilder()
+                .billingAddressParameters(null)
+                .allowedCardNetworks("VISA")
+                .isReadyToPayRequest())
+                .getJSONArray("allowedPaymentMethods").getJSONObject(0).getJSONObject("parameters");
+        assertFalse(parameters.getBoolean("billingAddressRequired"));
+        assertFalse(parameters.has("billingAddressParameters"));
+        assertEquals(1, parameters.getJSONArray("allowedCardNetworks").length());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void paymentDataRequest_needsTransactionInfo() {
+        new GooglePayRequestBuilder()
+                .tokenizationSpecification("example", "id")
+                .merchantInfo("m")
+                .writePaymentDataRequest();
+    }
+}
@@ -0,0 +1,107 @@
+package lt.myapp.myapp.Payment;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MoneyTest {
+
+    private static final BigDecimal MICROS = new BigDecimal(1000000);
+    private static final int SAMPLES = 200000;
+
+    // amounts around every rounding decision: exact, just below/at/above half, for each scale
+    private static final long[] EDGES = {0, 1, -1, 4999, 5000, 5001, 15000, 25000, -5000, -15000, -25000,
+            499999, 500000, 500001, 1500000, 2500000, -500000, -1500000, 999999, 1000000, 12345678,
+            Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 5000, Long.MIN_VALUE + 5000,
+            9223372036854775000L, -9223372036854775000L, 9223372036854775500L, -9223372036854775500L};
+
+    private static String bigDecimalPath(long micros, int minorUnits) {
+        return new BigDecimal(micros).divide(MICROS).setScale(minorUnits, RoundingMode.HALF_EVEN).toString();
+    }
+
+    private static void assertMatches(long micros, StringBuilder buffer) {
+        for (int minorUnits = 0; minorUnits <= Money.MICROS_DIGITS; minorUnits++) {
+            buffer.setLength(0);
+            assertEquals("micros=" + micros + " minorUnits=" + minorUnits,
+                    bigDecimalPath(micros, minorUnits), Money.formatTo(micros, minorUnits, buffer).toString());
+        }
+        assertEquals(PaymentRequests.microsToBigDecimal(micros).toString(), PaymentRequests.microsToString(micros));
+    }
+
+    @Test
+    public void formatTo_matchesBigDecimalAtEdges() {
+        StringBuilder buffer = new StringBuilder();
+        for (long edge : EDGES) {
+            for (long delta = -2; delta <= 2; delta++) {
+                long micros = edge + delta;
+                // skip the wrap around at the ends of the range
+                if ((delta > 0 && micros < edge) || (delta < 0 && micros > edge)) {
+                    continue;
+                }
+                assertMatches(micros, buffer);
+            }
+        }
+    }
+
+    @Test
+    public void formatTo_matchesBigDecimalOverFullRange() {
+        Random random = new Random(20191017);
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < SAMPLES; i++) {
+            long micros = random.nextLong();
+            // uniform longs are almost all huge, every other sample is shifted down to cover all magnitudes
+            if ((i & 1) == 1) {
+                micros >>= random.nextInt(64);
+            }
+            assertMatches(micros, buffer);
+        }
+    }
+
+    @Test
+    public void halfEven() {
+        assertEquals("0.02", Money.of(15000, "EUR").toPlainString());
+        assertEquals("0.02", Money.of(25000, "EUR").toPlainString());
+        assertEquals("-0.02", Money.of(-25000, "EUR").toPlainString());
+        assertEquals("0.00", Money.of(-5000, "EUR").toPlainString());
+        assertEquals(2, Money.of(25000, "EUR").toMinorUnits());
+    }
+
+    @Test
+    public void minorUnitsOfCurrency() {
+        assertEquals("1234", Money.of(1234499999, "JPY").toPlainString());
+        assertEquals("1.234", Money.of(1234500, "KWD").toPlainString());
+        assertEquals("1.236", Money.of(1235500, "KWD").toPlainString());
+        assertEquals("12.35 EUR", Money.of(12345678, "EUR").toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void currencyWithoutMinorUnits() {
+        Money.of(1, "XAU");
+    }
+
+    @Test
+    public void cartTotal() {
+        Money total = Money.of(1990000, "EUR").times(3).plus(Money.of(4990000, "EUR"));
+        assertEquals(10960000, total.getMicros());
+        assertEquals("10.96", total.formatTo(new StringBuilder()).toString());
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void plus_overflow() {
+        Money.of(Long.MAX_VALUE, "EUR").plus(Money.of(1, "EUR"));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void times_overflow() {
+        Money.of(Long.MIN_VALUE, "EUR").times(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void plus_otherCurrency() {
+        Money.of(1, "EUR").plus(Money.of(1, "USD"));
+    }
+}
@@ -0,0 +1,114 @@
+package lt.myapp.myapp.Payment;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.*;
+
+public class PaymentCompletionTest {
+
+    private static final PaymentMethodData TOKEN = new PaymentMethodData("PAYMENT_GATEWAY", "token", "Jonas");
+    private static final long DEADLINE = 3000;
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final AtomicInteger deliveries = new AtomicInteger();
+    private final Executor deliverOn = runnable -> {
+        deliveries.incrementAndGet();
+        runnable.run();
+    };
+    private final AtomicInteger fallbacks = new AtomicInteger();
+
+    private PaymentCompletion.Time fallback() {
+        fallbacks.incrementAndGet();
+        return new PaymentCompletion.Time(42, PaymentCompletion.TimeSource.ESTIMATE);
+    }
+
+    private Single<PaymentMethodData> token(long delay) {
+        return Single.just(TOKEN).delay(delay, TimeUnit.MILLISECONDS, scheduler);
+    }
+
+    private Single<PaymentCompletion.Time> networkTime(long delay) {
+        return Single.just(new PaymentCompletion.Time(1000, PaymentCompletion.TimeSource.NETWORK))
+                .delay(delay, TimeUnit.MILLISECONDS, scheduler);
+    }
+
+    private TestObserver<PaymentCompletion> complete(Single<PaymentMethodData> token, Single<PaymentCompletion.Time> time) {
+        return PaymentCompletion.complete(token, time, this::fallback, DEADLINE, scheduler, deliverOn).test();
+    }
+
+    @Test
+    public void tokenAndTimeRunConcurrently() {
+        TestObserver<PaymentCompletion> observer = complete(token(500), networkTime(800));
+
+        scheduler.advanceTimeTo(799, TimeUnit.MILLISECONDS);
+        observer.assertNoValues();
+        scheduler.advanceTimeTo(800, TimeUnit.MILLISECONDS);//max(500, 800), not 1300
+        observer.assertValueCount(1);
+        observer.assertComplete();
+
+        PaymentCompletion completion = observer.values().get(0);
+        assertSame(TOKEN, completion.getPaymentMethodData());
+        assertEquals(1000, completion.getTime());
+        assertEquals(PaymentCompletion.TimeSource.NETWORK, completion.getTimeSource());
+        assertEquals(0, fallbacks.get());
+        assertEquals(1, deliveries.get());
+    }
+
+    @Test
+    public void slowTime_fallsBackAtDeadline() {
+        TestObserver<PaymentCompletion> observer = complete(token(100), networkTime(10000));
+
+        scheduler.advanceTimeTo(DEADLINE, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(1);
+        assertEquals(PaymentCompletion.TimeSource.ESTIMATE, observer.values().get(0).getTimeSource());
+        assertEquals(42, observer.values().get(0).getTime());
+
+        scheduler.advanceTimeTo(20000, TimeUnit.MILLISECONDS);//the late answer changes nothing
+        observer.assertValueCount(1);
+        assertEquals(1, fallbacks.get());
+        assertEquals(1, deliveries.get());
+    }
+
+    @Test
+    public void failedTime_fallsBackRightAway() {
+        TestObserver<PaymentCompletion> observer = complete(token(100),
+                Single.error(new java.net.SocketTimeoutException("no server")));
+
+        scheduler.advanceTimeTo(100, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(1);
+        assertEquals(PaymentCompletion.TimeSource.ESTIMATE, observer.values().get(0).getTimeSource());
+    }
+
+    @Test
+    public void badToken_failsOnceAndCancelsTime() {
+        AtomicBoolean timeCancelled = new AtomicBoolean();
+        TestObserver<PaymentCompletion> observer = complete(
+                Single.<PaymentMethodData>error(new JSONException("paymentMethodData.tokenizationData is missing"))
+                        .delay(100, TimeUnit.MILLISECONDS, scheduler, true),
+                networkTime(1000).doOnDispose(() -> timeCancelled.set(true)));
+
+        scheduler.advanceTimeTo(5000, TimeUnit.MILLISECONDS);
+        observer.assertError(JSONException.class);
+        assertTrue(timeCancelled.get());
+        assertEquals(0, fallbacks.get());
+        assertEquals(1, deliveries.get());
+    }
+
+    @Test
+    public void dispose_deliversNothing() {
+        TestObserver<PaymentCompletion> observer = complete(token(100), networkTime(200));
+        observer.dispose();
+        scheduler.advanceTimeTo(5000, TimeUnit.MILLISECONDS);
+        observer.assertNoValues();
+        assertEquals(0, deliveries.get());
+    }
+}
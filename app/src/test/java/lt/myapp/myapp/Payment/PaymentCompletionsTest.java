@@ -0,0 +1,115 @@
+package lt.myapp.myapp.Payment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Single;
+
+import static org.junit.Assert.*;
+
+public class PaymentCompletionsTest {
+
+    private static final PaymentCompletion PAYMENT = new PaymentCompletion(
+            new PaymentMethodData("PAYMENT_GATEWAY", "token", "Jonas"),
+            new PaymentCompletion.Time(1000, PaymentCompletion.TimeSource.NETWORK));
+
+    // stands in for the main looper, run by runMain()
+    private final List<Runnable> posted = new ArrayList<>();
+    private final PaymentCompletions completions = new PaymentCompletions(posted::add);
+
+    private void runMain() {
+        while (!posted.isEmpty()) {
+            posted.remove(0).run();
+        }
+    }
+
+    private static class Recorder implements PaymentsUtil.PUListener {
+        final List<PaymentCompletion> received = new ArrayList<>();
+
+        @Override
+        public void onSuccess(PaymentCompletion completion) {
+            received.add(completion);
+        }
+    }
+
+    @Test
+    public void attachedListener_getsResultOnMainThread() {
+        Recorder activity = new Recorder();
+        completions.attach(activity);
+        completions.track(Single.just(PAYMENT));
+        assertTrue(activity.received.isEmpty());//not before the main thread runs
+
+        runMain();
+        assertEquals(1, activity.received.size());
+        assertSame(PAYMENT, activity.received.get(0));
+        assertEquals(0, completions.pending());
+    }
+
+    @Test
+    public void resultWithoutActivity_waitsForTheNextOne() {
+        Recorder destroyed = new Recorder();
+        completions.attach(destroyed);
+        completions.detach(destroyed);//rotation: the old activity is gone, the new one isn't there yet
+
+        completions.track(Single.just(PAYMENT));
+        runMain();
+        assertEquals(1, completions.pending());
+
+        Recorder recreated = new Recorder();
+        completions.attach(recreated);
+        runMain();
+        assertEquals(1, recreated.received.size());
+        assertTrue(destroyed.received.isEmpty());
+    }
+
+    @Test
+    public void detachBeforeDelivery_keepsResult() {
+        Recorder destroyed = new Recorder();
+        completions.attach(destroyed);
+        completions.track(Single.just(PAYMENT));
+        completions.detach(destroyed);//the delivery is queued but the activity went first
+        runMain();
+        assertTrue(destroyed.received.isEmpty());
+
+        Recorder recreated = new Recorder();
+        completions.attach(recreated);
+        runMain();
+        assertEquals(1, recreated.received.size());
+    }
+
+    @Test
+    public void everyResult_isDeliveredOnce() {
+        Recorder activity = new Recorder();
+        completions.track(Single.just(PAYMENT));
+        completions.attach(activity);
+        completions.track(Single.just(PAYMENT));
+        completions.attach(activity);//attached again, queues another delivery
+        runMain();
+        runMain();
+        assertEquals(2, activity.received.size());
+    }
+
+    @Test
+    public void staleDetach_leavesNewListenerAttached() {
+        Recorder destroyed = new Recorder();
+        Recorder recreated = new Recorder();
+        completions.attach(destroyed);
+        completions.attach(recreated);//the new activity's onCreate came before the old one's onDestroy
+        completions.detach(destroyed);
+        completions.track(Single.just(PAYMENT));
+        runMain();
+        assertEquals(1, recreated.received.size());
+    }
+
+    @Test
+    public void failedCompletion_isNotKept() {
+        Recorder activity = new Recorder();
+        completions.attach(activity);
+        completions.track(Single.<PaymentCompletion>error(new IllegalArgumentException("bad token")));
+        runMain();
+        assertTrue(activity.received.isEmpty());
+        assertEquals(0, completions.pending());
+    }
+}
@@ -0,0 +1,121 @@
+package lt.myapp.myapp.Payment;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PaymentMethodDataTest {
+
+    private static final String PAYMENT_DATA = "{"
+            + "\"apiVersion\":2,\"apiVersionMinor\":0,"
+            + "\"paymentMethodData\":{"
+            + "\"description\":\"Visa \u2022\u2022\u2022\u2022 1234\","
+            + "\"info\":{"
+            + "\"cardNetwork\":\"VISA\",\"cardDetails\":\"1234\","
+            + "\"billingAddress\":{"
+            + "\"phoneNumber\":\"+37060000000\",\"address3\":\"\",\"sortingCode\":\"\","
+            + "\"address2\":\"\",\"countryCode\":\"LT\",\"address1\":\"Gedimino pr. 1\","
+            + "\"postalCode\":\"01103\",\"name\":\"Jonas Jonaitis\",\"locality\":\"Vilnius\","
+            + "\"administrativeArea\":\"\"}},"
+            + "\"type\":\"CARD\","
+            + "\"tokenizationData\":{"
+            + "\"type\":\"PAYMENT_GATEWAY\","
+            + "\"token\":\"examplePaymentMethodToken\"}}}";
+
+    // real gateway tokens are JSON documents inside a string
+    private static final String ESCAPED_TOKEN = "{\"signature\":\"MEUC\\/iQ==\",\"protocolVersion\":\"ECv2\","
+            + "\"signedMessage\":\"{\\\"encryptedMessage\\\":\\\"a\\\\nb\\\"}\"}";
+
+    private static PaymentMethodData jsonObjectPath(String paymentData) throws JSONException {
+        JSONObject paymentMethodData = new JSONObject(paymentData).getJSONObject("paymentMethodData");
+        JSONObject tokenizationData = paymentMethodData.getJSONObject("tokenizationData");
+        JSONObject info = paymentMethodData.optJSONObject("info");
+        JSONObject billingAddress = info != null ? info.optJSONObject("billingAddress") : null;
+        return new PaymentMethodData(tokenizationData.getString("type"), tokenizationData.getString("token"),
+                billingAddress != null ? billingAddress.getString("name") : null);
+    }
+
+    private static void assertParity(String paymentData) throws JSONException {
+        PaymentMethodData expected = jsonObjectPath(paymentData);
+        PaymentMethodData parsed = PaymentMethodData.parse(paymentData);
+        assertEquals(expected.getTokenizationType(), parsed.getTokenizationType());
+        assertEquals(expected.getToken(), parsed.getToken());
+        assertEquals(expected.getBillingName(), parsed.getBillingName());
+    }
+
+    @Test
+    public void parse_sampleResponse() throws Exception {
+        PaymentMethodData parsed = PaymentMethodData.parse(PAYMENT_DATA);
+        assertEquals("PAYMENT_GATEWAY", parsed.getTokenizationType());
+        assertEquals("examplePaymentMethodToken", parsed.getToken());
+        assertEquals("Jonas Jonaitis", parsed.getBillingName());
+        assertParity(PAYMENT_DATA);
+    }
+
+    @Test
+    public void parse_unescapesToken() throws Exception {
+        String paymentData = "{\"paymentMethodData\":{\"tokenizationData\":{\"type\":\"DIRECT\",\"token\":"
+                + JSONObject.quote(ESCAPED_TOKEN) + "}}}";
+        assertEquals(ESCAPED_TOKEN, PaymentMethodData.parse(paymentData).getToken());
+        assertParity(paymentData);
+    }
+
+    @Test
+    public void parse_skipsDecoysAndWhitespace() throws Exception {
+        String paymentData = "{ \"name\" : \"root\", \"tokenizationData\": {\"token\": \"wrong\"},\n"
+                + "  \"shippingAddress\": {\"name\": \"Not me\", \"lines\": [\"} ] {\", {\"a\": [1, 2.5e3, null]}]},\n"
+                + "  \"paymentMethodData\" : {\n"
+                + "    \"info\" : { \"billingAddress\" : { \"name\" : \"A \\\"Quoted\\\" \\u0104\" } },\n"
+                + "    \"other\": {\"tokenizationData\": {\"type\": \"nested\"}},\n"
+                + "    \"tokenizationData\" : { \"token\" : \"t\", \"type\" : \"PAYMENT_GATEWAY\" }\n"
+                + "  }\n"
+                + "}";
+        PaymentMethodData parsed = PaymentMethodData.parse(paymentData);
+        assertEquals("PAYMENT_GATEWAY", parsed.getTokenizationType());
+        assertEquals("t", parsed.getToken());
+        assertEquals("A \"Quoted\" \u0104", parsed.getBillingName());
+        assertParity(paymentData);
+    }
+
+    @Test
+    public void parse_withoutBillingAddress() throws Exception {
+        String paymentData = "{\"paymentMethodData\":{\"type\":\"CARD\","
+                + "\"tokenizationData\":{\"type\":\"PAYMENT_GATEWAY\",\"token\":\"t\"}}}";
+        assertNull(PaymentMethodData.parse(paymentData).getBillingName());
+        assertParity(paymentData);
+    }
+
+    @Test(expected = JSONException.class)
+    public void parse_withoutToken() throws Exception {
+        PaymentMethodData.parse("{\"paymentMethodData\":{\"tokenizationData\":{\"type\":\"PAYMENT_GATEWAY\"}}}");
+    }
+
+    @Test(expected = JSONException.class)
+    public void parse_truncated() throws Exception {
+        PaymentMethodData.parse(PAYMENT_DATA.substring(0, PAYMENT_DATA.indexOf("\"token\"") + 10));
+    }
+
+    @Test(expected = JSONException.class)
+    public void parse_notAnObject() throws Exception {
+        PaymentMethodData.parse("[]");
+    }
+
+    @Test
+    public void extract_nonStringValuesAsText() throws Exception {
+        String[] values = new JsonPathExtractor("apiVersion", "paymentMethodData.info", "missing.path")
+                .extract(PAYMENT_DATA);
+        assertEquals("2", values[0]);
+        assertTrue(new JSONObject(PAYMENT_DATA).getJSONObject("paymentMethodData").getJSONObject("info")
+                .similar(new JSONObject(values[1])));
+        assertNull(values[2]);
+    }
+
+    @Test
+    public void extract_stopsWhenAllFound() throws Exception {
+        // everything after the value is never read, even if it's garbage
+        String[] values = new JsonPathExtractor("a.b").extract("{\"a\":{\"b\":\"x\"} this is not json");
+        assertEquals("x", values[0]);
+    }
+}
@@ -0,0 +1,96 @@
+package lt.myapp.myapp.Payment;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.*;
+
+public class PaymentRequestPrewarmerTest {
+
+    private static final PaymentConfig OTHER = new PaymentConfig("Other", "adyen", "id", "DE", "USD");
+
+    private final AtomicInteger builds = new AtomicInteger();
+    private final TestScheduler scheduler = new TestScheduler();
+    private final PaymentRequestPrewarmer<String> prewarmer = new PaymentRequestPrewarmer<>(json -> {
+        builds.incrementAndGet();
+        return json;
+    }, scheduler);
+
+    @Test
+    public void prepare_buildsInBackgroundOnce() {
+        prewarmer.prepare(1000000, PaymentConfig.DEFAULT);
+        assertNull(prewarmer.peek(1000000, PaymentConfig.DEFAULT));
+        assertEquals(0, builds.get());
+
+        scheduler.triggerActions();
+        prewarmer.prepare(1000000, PaymentConfig.DEFAULT);
+        String ready = prewarmer.peek(1000000, PaymentConfig.DEFAULT);
+        assertEquals(PaymentRequestTemplate.forConfig(PaymentConfig.DEFAULT).render("1.00"), ready);
+        prewarmer.get(1000000, PaymentConfig.DEFAULT).test().assertValue(ready);
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void priceOrConfigChange_invalidates() {
+        prewarmer.prepare(1000000, PaymentConfig.DEFAULT);
+        scheduler.triggerActions();
+
+        assertNull(prewarmer.peek(2000000, PaymentConfig.DEFAULT));
+        prewarmer.prepare(2000000, PaymentConfig.DEFAULT);
+        assertNull(prewarmer.peek(1000000, PaymentConfig.DEFAULT));
+        scheduler.triggerActions();
+        assertTrue(prewarmer.peek(2000000, PaymentConfig.DEFAULT).contains("\"2.00\""));
+
+        assertNull(prewarmer.peek(2000000, OTHER));
+        TestObserver<String> other = prewarmer.get(2000000, OTHER).test();
+        scheduler.triggerActions();
+        other.assertValueCount(1);
+        assertTrue(other.values().get(0).contains("\"USD\""));
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    public void get_waitsForRunningBuild() {
+        prewarmer.prepare(1000000, PaymentConfig.DEFAULT);
+        TestObserver<String> click = prewarmer.get(1000000, PaymentConfig.DEFAULT).test();
+        click.assertNoValues();
+        scheduler.triggerActions();
+        click.assertValueCount(1);
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void invalidate_dropsRunningBuild() {
+        prewarmer.prepare(1000000, PaymentConfig.DEFAULT);
+        prewarmer.invalidate();
+        scheduler.triggerActions();
+        assertNull(prewarmer.peek(1000000, PaymentConfig.DEFAULT));
+    }
+
+    @Test
+    public void failedBuild_isRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        PaymentRequestPrewarmer<String> flaky = new PaymentRequestPrewarmer<>(json -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalArgumentException("bad json");
+            }
+            return json;
+        }, Schedulers.single());
+
+        TestObserver<String> first = flaky.get(1000000, PaymentConfig.DEFAULT).test();
+        assertTrue(first.await(1, TimeUnit.SECONDS));
+        first.assertError(IllegalArgumentException.class);
+        assertNull(flaky.peek(1000000, PaymentConfig.DEFAULT));
+
+        TestObserver<String> second = flaky.get(1000000, PaymentConfig.DEFAULT).test();
+        assertTrue(second.await(1, TimeUnit.SECONDS));
+        second.assertValueCount(1);
+        assertEquals(2, attempts.get());
+    }
+}
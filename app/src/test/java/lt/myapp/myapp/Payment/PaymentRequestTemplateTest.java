@@ -0,0 +1,52 @@
+package lt.myapp.myapp.Payment;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PaymentRequestTemplateTest {
+
+    private static final PaymentConfig OTHER = new PaymentConfig(
+            "Shop \"\u0104\u017euolas\" / UAB", "adyen", "merchant\\42", "DE", "USD");
+
+    private static String slowPath(String price, PaymentConfig config) {
+        return PaymentRequests.getPaymentDataRequest(price, config).toString();
+    }
+
+    @Test
+    public void render_isByteIdenticalToJsonObject() {
+        PaymentRequestTemplate template = PaymentRequestTemplate.forConfig(PaymentConfig.DEFAULT);
+        long[] micros = {0, 1, 4999, 5000, 15000, 1000000, 12345678, 999995000, -2500000, Long.MAX_VALUE};
+        for (long m : micros) {
+            String price = PaymentRequests.microsToString(m);
+            assertEquals(price, slowPath(price, PaymentConfig.DEFAULT), template.render(price));
+        }
+        assertEquals(PaymentRequests.getPaymentDataRequest("12.34").toString(), template.render("12.34"));
+    }
+
+    @Test
+    public void render_escapedConfigValues() {
+        assertEquals(slowPath("7.00", OTHER), PaymentRequestTemplate.forConfig(OTHER).render("7.00"));
+    }
+
+    @Test
+    public void render_priceNeedingEscapesTakesSlowPath() {
+        PaymentRequestTemplate template = PaymentRequestTemplate.forConfig(PaymentConfig.DEFAULT);
+        assertEquals(slowPath("1\"2", PaymentConfig.DEFAULT), template.render("1\"2"));
+        assertEquals(slowPath("", PaymentConfig.DEFAULT), template.render(""));
+    }
+
+    @Test
+    public void render_markerInConfigTakesSlowPath() {
+        PaymentConfig clash = new PaymentConfig("__totalPrice__", "example", "id", "LT", "EUR");
+        assertEquals(slowPath("3.50", clash), PaymentRequestTemplate.forConfig(clash).render("3.50"));
+    }
+
+    @Test
+    public void forConfig_sharesTemplateOfEqualConfigs() {
+        PaymentConfig copy = new PaymentConfig(OTHER.getMerchantName(), OTHER.getGateway(),
+                OTHER.getGatewayMerchantId(), OTHER.getCountryCode(), OTHER.getCurrencyCode());
+        assertSame(PaymentRequestTemplate.forConfig(OTHER), PaymentRequestTemplate.forConfig(copy));
+        assertNotSame(PaymentRequestTemplate.forConfig(OTHER), PaymentRequestTemplate.forConfig(PaymentConfig.DEFAULT));
+    }
+}
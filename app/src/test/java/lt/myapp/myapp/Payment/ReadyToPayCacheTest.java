@@ -0,0 +1,128 @@
+package lt.myapp.myapp.Payment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.*;
+
+public class ReadyToPayCacheTest {
+
+    private static final long NOW = 1571700000000L;
+    private static final long TTL = ReadyToPayCache.DEFAULT_TTL;
+    private static final String REQUEST = new GooglePayRequestBuilder().isReadyToPayRequest();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void freshRecord_returnsAnswer() {
+        byte[] record = ReadyToPayCache.encode(REQUEST, true, NOW);
+        assertEquals(ReadyToPayCache.RECORD_SIZE, record.length);
+
+        assertEquals(Boolean.TRUE, ReadyToPayCache.decode(record, REQUEST, NOW + 60000, TTL));
+        assertEquals(Boolean.FALSE, ReadyToPayCache.decode(ReadyToPayCache.encode(REQUEST, false, NOW), REQUEST, NOW, TTL));
+    }
+
+    @Test
+    public void expiredRecord_isIgnored() {
+        byte[] record = ReadyToPayCache.encode(REQUEST, true, NOW);
+        assertEquals(Boolean.TRUE, ReadyToPayCache.decode(record, REQUEST, NOW + TTL, TTL));
+        assertNull(ReadyToPayCache.decode(record, REQUEST, NOW + TTL + 1, TTL));
+        // the wall clock went back before the save, the age is unknown
+        assertNull(ReadyToPayCache.decode(record, REQUEST, NOW - 1, TTL));
+    }
+
+    @Test
+    public void otherRequest_misses() {
+        byte[] record = ReadyToPayCache.encode(REQUEST, true, NOW);
+        String otherConfig = new GooglePayRequestBuilder()
+                .allowedCardNetworks("VISA")
+                .isReadyToPayRequest();
+        assertNull(ReadyToPayCache.decode(record, otherConfig, NOW, TTL));
+    }
+
+    @Test
+    public void damagedRecord_isIgnored() {
+        byte[] record = ReadyToPayCache.encode(REQUEST, true, NOW);
+        record[16] ^= 1;//the answer
+        assertNull(ReadyToPayCache.decode(record, REQUEST, NOW, TTL));
+        assertNull(ReadyToPayCache.decode(new byte[ReadyToPayCache.RECORD_SIZE], REQUEST, NOW, TTL));
+    }
+
+    @Test
+    public void saveThenLoad_roundTripsThroughTheFile() throws Exception {
+        File file = new File(folder.getRoot(), "ready_to_pay.bin");
+        ReadyToPayCache cache = new ReadyToPayCache(file, TTL, Schedulers.trampoline());
+        assertNull(cache.load(REQUEST));//nothing stored yet
+
+        cache.save(REQUEST, true);
+        assertEquals(Boolean.TRUE, cache.load(REQUEST));
+        cache.save(REQUEST, false);
+        assertEquals(Boolean.FALSE, cache.load(REQUEST));
+        assertEquals(ReadyToPayCache.RECORD_SIZE, file.length());
+    }
+
+    @Test
+    public void cachedAnswer_comesBeforeTheFreshOne() {
+        TestScheduler scheduler = new TestScheduler();
+        TestObserver<Boolean> observer = ReadyToPayCache.cachedThenFresh(Maybe.just(true),
+                Single.just(true).delay(800, TimeUnit.MILLISECONDS, scheduler)).test();
+
+        observer.assertValues(true);//no wait for Play services
+        scheduler.advanceTimeBy(800, TimeUnit.MILLISECONDS);
+        observer.assertValues(true);//same answer, the button is left alone
+        observer.assertComplete();
+    }
+
+    @Test
+    public void changedAnswer_isEmitted() {
+        TestScheduler scheduler = new TestScheduler();
+        TestObserver<Boolean> observer = ReadyToPayCache.cachedThenFresh(Maybe.just(true),
+                Single.just(false).delay(800, TimeUnit.MILLISECONDS, scheduler)).test();
+
+        scheduler.advanceTimeBy(800, TimeUnit.MILLISECONDS);
+        observer.assertValues(true, false);
+    }
+
+    @Test
+    public void cachedAnswer_waitsForASlowCache() {
+        TestScheduler scheduler = new TestScheduler();
+        TestObserver<Boolean> observer = ReadyToPayCache.cachedThenFresh(
+                Maybe.just(false).delay(50, TimeUnit.MILLISECONDS, scheduler), Single.just(true)).test();
+
+        observer.assertNoValues();//the fresh one is held back to keep the order
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        observer.assertValues(false, true);
+    }
+
+    @Test
+    public void noCache_onlyTheFreshAnswer() {
+        ReadyToPayCache.cachedThenFresh(Maybe.<Boolean>empty(), Single.just(true)).test().assertValues(true);
+    }
+
+    @Test
+    public void failedRevalidation_keepsTheCachedAnswer() {
+        ReadyToPayCache.cachedThenFresh(Maybe.just(true), Single.<Boolean>error(new IllegalStateException()))
+                .test()
+                .assertValues(true)
+                .assertComplete();
+    }
+
+    @Test
+    public void failedRevalidation_withoutCache_hidesTheButton() {
+        ReadyToPayCache.cachedThenFresh(Maybe.<Boolean>empty(), Single.<Boolean>error(new IllegalStateException()))
+                .test()
+                .assertValues(false)
+                .assertComplete();
+    }
+}
@@ -0,0 +1,143 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks on which thread each entry point calls the listener back.
+ */
+public class CallbackExecutorTest {
+
+    @ClassRule
+    public static final JvmTicks TICKS = new JvmTicks();
+
+    // stands in for the main looper
+    private static ExecutorService mainThread;
+    private static ExecutorService consumer;
+
+    private LocalNtpResponder responder;
+
+    @BeforeClass
+    public static void threads() {
+        mainThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test-main"));
+        consumer = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test-consumer"));
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(callable -> Schedulers.from(mainThread));
+        RxAndroidPlugins.setMainThreadSchedulerHandler(scheduler -> Schedulers.from(mainThread));
+    }
+
+    @AfterClass
+    public static void resetThreads() {
+        RxAndroidPlugins.reset();
+        mainThread.shutdown();
+        consumer.shutdown();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        responder = new LocalNtpResponder();
+        SNTPClient.sDefaultPort = responder.getPort();
+    }
+
+    @After
+    public void tearDown() {
+        responder.close();
+        SntpState.reset();
+    }
+
+    @Test
+    public void getDate_defaultsToMainThread() throws Exception {
+        ThreadListener listener = new ThreadListener();
+        SNTPClient.getDate(responder.getHost(), listener);
+        assertEquals("test-main", listener.await());
+    }
+
+    @Test
+    public void getDateANR_defaultsToWorkerThread() throws Exception {
+        ThreadListener listener = new ThreadListener();
+        SNTPClient.getDateANR(responder.getHost(), listener);
+        assertTrue(listener.await().startsWith("sntp-"));
+    }
+
+    @Test
+    public void getDateANR_canHandOffToMainThread() throws Exception {
+        ThreadListener listener = new ThreadListener();
+        SNTPClient.getDateANR(responder.getHost(), TimeExecutor.mainThread(), listener);
+        assertEquals("test-main", listener.await());
+    }
+
+    @Test
+    public void getDate_onBackgroundExecutor() throws Exception {
+        ThreadListener listener = new ThreadListener();
+        SNTPClient.getDate(responder.getHost(), consumer, listener);
+        assertEquals("test-consumer", listener.await());
+    }
+
+    @Test
+    public void getDateBurst_direct() throws Exception {
+        ThreadListener listener = new ThreadListener();
+        SNTPClient.getDateBurst(responder.getHost(), TimeExecutor.direct(), listener);
+        assertTrue(listener.await().startsWith("sntp-"));
+    }
+
+    @Test
+    public void poolErrors_followTheExecutorToo() throws Exception {
+        responder.setLossRate(1);
+        ThreadListener listener = new ThreadListener();
+        SNTPClient.getDate(Collections.singletonList(responder.getHost()), SNTPClient.PoolMode.FIRST_GOOD, 200,
+                consumer, listener);
+        assertEquals("test-consumer", listener.await());
+        assertNotNull(listener.error);
+    }
+
+    @Test
+    public void cachedTime_directIsDeliveredInPlace() throws Exception {
+        long now = System.currentTimeMillis();
+        NetworkClock.getInstance().update(new NtpSample("cached", now, now, Ticks.elapsedRealtime(), 10, 0));
+        ThreadListener listener = new ThreadListener();
+        NetworkClock.getInstance().getTime(TimeExecutor.direct(), listener);
+        assertEquals(Thread.currentThread().getName(), listener.await());
+
+        listener = new ThreadListener();
+        NetworkClock.getInstance().getTime(listener);
+        assertEquals("test-main", listener.await());
+    }
+
+    private static class ThreadListener implements SNTPClient.Listener {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String thread;
+        volatile Exception error;
+
+        String await() throws InterruptedException {
+            assertTrue(done.await(3, TimeUnit.SECONDS));
+            return thread;
+        }
+
+        @Override
+        public void onTimeReceived(long requestTime, long serverTime, long offset) {
+            thread = Thread.currentThread().getName();
+            done.countDown();
+        }
+
+        @Override
+        public void onError(long requestTime, Exception ex) {
+            error = ex;
+            thread = Thread.currentThread().getName();
+            done.countDown();
+        }
+    }
+}
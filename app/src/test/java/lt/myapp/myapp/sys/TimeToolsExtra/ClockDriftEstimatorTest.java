@@ -0,0 +1,47 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClockDriftEstimatorTest {
+
+    private static final long EPOCH = 1571700000000L;
+
+    private static NtpSample sample(long ticks, double driftPpm, long roundTrip) {
+        long networkTime = EPOCH + ticks + Math.round(ticks * driftPpm / 1e6);
+        return new NtpSample("test", networkTime, networkTime, ticks, roundTrip, 0);
+    }
+
+    @Test
+    public void singleSample_noDrift() {
+        ClockDriftEstimator estimator = new ClockDriftEstimator();
+        ClockDriftEstimator.Estimate estimate = estimator.add(sample(1000, 0, 40));
+        assertEquals(0, estimate.getDriftPpm(), 0);
+        assertEquals(EPOCH + 61000, estimate.timeAt(61000));
+        assertTrue(estimate.uncertaintyAt(1000) >= 20);
+    }
+
+    @Test
+    public void fitsDrift() {
+        ClockDriftEstimator estimator = new ClockDriftEstimator();
+        ClockDriftEstimator.Estimate estimate = null;
+        for (int i = 1; i <= 10; i++) {
+            estimate = estimator.add(sample(i * 600000L, 50, 10));
+        }
+        assertEquals(50, estimate.getDriftPpm(), 1);
+        long ticks = 20 * 600000L;
+        long expected = EPOCH + ticks + Math.round(ticks * 50 / 1e6);
+        assertEquals(expected, estimate.timeAt(ticks), estimate.uncertaintyAt(ticks));
+    }
+
+    @Test
+    public void shortRoundTripsWeighMore() {
+        ClockDriftEstimator estimator = new ClockDriftEstimator();
+        estimator.add(sample(1000, 0, 2));
+        // a slow sample whose offset is skewed by 300 ms of asymmetric delay
+        NtpSample skewed = new NtpSample("test", EPOCH + 2000 + 300, EPOCH + 2000 + 300, 2000, 900, 300);
+        ClockDriftEstimator.Estimate estimate = estimator.add(skewed);
+        assertTrue(Math.abs(estimate.timeAt(2000) - (EPOCH + 2000)) < 30);
+    }
+}
@@ -0,0 +1,21 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The filter's pick, the offset accuracy it buys is measured by ClockFilterBenchmark in the benchmark module.
+ */
+public class ClockFilterTest {
+
+    @Test
+    public void filterPicksMinimumDelay() {
+        ClockFilter filter = new ClockFilter();
+        filter.add(new NtpSample("a", 0, 0, 1000, 80, -40));
+        filter.add(new NtpSample("a", 0, 0, 1050, 6, -3));
+        filter.add(new NtpSample("a", 0, 0, 1100, 30, -15));
+        assertEquals(6, filter.best().getRoundTripTime());
+        assertTrue(filter.jitter() > 0);
+    }
+}
@@ -0,0 +1,58 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void buckets_coverValuesInOrder() {
+        int previous = -1;
+        for (long value = 0; value <= Histogram.MAX_VALUE; value += 1 + value / 64) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(bucket >= previous);
+            assertTrue(value <= Histogram.upperBound(bucket));
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void percentiles_withinBucketError() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500.5, snapshot.getMean(), 0.001);
+        assertEquals(500, snapshot.percentile(50), 500 / 4);
+        assertEquals(990, snapshot.percentile(99), 990 / 4);
+        assertEquals(0, new Histogram().snapshot().percentile(99));
+    }
+
+    @Test
+    public void metrics_dumpEveryServer() {
+        SntpMetrics.reset();
+        SntpMetrics.forServer("a.test").success(3, 40, -12);
+        SntpMetrics.forServer("a.test").failure(new SocketTimeoutException(), false);
+        SntpMetrics.forServer("b.test").failure(new IOException(), true);
+
+        SntpMetrics.Snapshot a = SntpMetrics.snapshot().get("a.test");
+        assertEquals(1, a.successes);
+        assertEquals(1, a.timeouts);
+        assertEquals(12, a.offset.getMax());
+        assertEquals(1, SntpMetrics.snapshot().get("b.test").cancels);
+
+        StringWriter out = new StringWriter();
+        SntpMetrics.dump("", new PrintWriter(out, true));
+        assertTrue(out.toString().contains("a.test: ok=1 timeouts=1"));
+        assertTrue(out.toString().contains("b.test"));
+    }
+}
@@ -0,0 +1,86 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HostResolverTest {
+
+    @Test
+    public void positiveEntry_isCached() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        HostResolver resolver = new HostResolver(host -> {
+            lookups.incrementAndGet();
+            return InetAddress.getLoopbackAddress();
+        }, 60000, 60000);
+
+        assertFalse(resolver.isCached("time.test"));
+        assertEquals(InetAddress.getLoopbackAddress(), resolver.resolve("time.test"));
+        assertEquals(InetAddress.getLoopbackAddress(), resolver.resolve("time.test"));
+        assertEquals(1, lookups.get());
+        assertTrue(resolver.isCached("time.test"));
+        assertTrue(resolver.getLookupTime("time.test") >= 0);
+        assertEquals(-1, resolver.getLookupTime("other.test"));
+    }
+
+    @Test
+    public void negativeEntry_isCached() {
+        AtomicInteger lookups = new AtomicInteger();
+        HostResolver resolver = new HostResolver(host -> {
+            lookups.incrementAndGet();
+            throw new UnknownHostException(host);
+        }, 60000, 60000);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                resolver.resolve("dead.test");
+                fail();
+            } catch (UnknownHostException expected) {
+                assertEquals("dead.test", expected.getMessage());
+            }
+        }
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void expiredEntry_isResolvedAgain() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        HostResolver resolver = new HostResolver(host -> {
+            lookups.incrementAndGet();
+            return InetAddress.getLoopbackAddress();
+        }, 0, 0);
+
+        resolver.resolve("time.test");
+        resolver.resolve("time.test");
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void failedRefreshOfWarmHost_waitsTheNegativeTtl() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        HostResolver resolver = new HostResolver(host -> {
+            if (lookups.incrementAndGet() > 1) {
+                throw new UnknownHostException(host);
+            }
+            return InetAddress.getLoopbackAddress();
+        }, 600, 300);//refreshed 300 ms ahead, as long as a negative entry lives
+
+        resolver.prewarm(Collections.singletonList("warm.test"));
+        // first lookup succeeds, the refresh ahead of its expiry fails
+        long deadline = System.currentTimeMillis() + 2000;
+        while (lookups.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, lookups.get());
+
+        Thread.sleep(150);
+        assertEquals("retried inside the negative ttl", 2, lookups.get());
+        assertEquals(InetAddress.getLoopbackAddress(), resolver.resolve("warm.test"));//old address is kept
+        assertEquals(2, lookups.get());
+    }
+}
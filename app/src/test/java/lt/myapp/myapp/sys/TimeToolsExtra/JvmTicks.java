@@ -0,0 +1,24 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.rules.ExternalResource;
+
+/**
+ * Runs {@link Ticks} on the JVM's monotonic clock, the android.jar stub of SystemClock always answers 0.
+ * <p>
+ * Tests measuring real round trips use it as a class rule:
+ * <pre>@ClassRule public static final JvmTicks TICKS = new JvmTicks();</pre>
+ */
+class JvmTicks extends ExternalResource {
+
+    static final Ticks.Source NANO_TIME = () -> System.nanoTime() / 1000000L;
+
+    @Override
+    protected void before() {
+        Ticks.setSource(NANO_TIME);
+    }
+
+    @Override
+    protected void after() {
+        Ticks.setSource(Ticks.SYSTEM_CLOCK);
+    }
+}
@@ -0,0 +1,204 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process NTP server for tests, answers requests on a loopback port with optional faults.
+ * <p>
+ * Faults are picked per request with the configured probabilities, in this order:
+ * loss, short reply, wrong mode reply, corrupted reply. Delays apply to every reply that is sent:
+ * {@link #setDelay} before the receive time stamp (request path), {@link #setResponseJitter} after
+ * the transmit time stamp (response path).
+ */
+class LocalNtpResponder implements AutoCloseable {
+
+    private final DatagramSocket socket;
+    private final Thread thread;
+    private final ScheduledExecutorService delayed = Executors.newSingleThreadScheduledExecutor();
+    private final Random random = new Random(1);
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong faulty = new AtomicLong();
+    private volatile int delay;
+    private volatile int responseJitter;
+    private volatile double lossRate;
+    private volatile double shortRate;
+    private volatile double wrongModeRate;
+    private volatile double corruptRate;
+
+    LocalNtpResponder() throws IOException {
+        socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        thread = new Thread(this::serve, "local-ntp-responder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return socket.getLocalPort();
+    }
+
+    String getHost() {
+        return socket.getLocalAddress().getHostAddress();
+    }
+
+    /**
+     * @return replies sent, faulty ones included
+     */
+    long getServed() {
+        return served.get();
+    }
+
+    /**
+     * @return requests dropped on purpose
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return short, wrong mode and corrupted replies sent
+     */
+    long getFaulty() {
+        return faulty.get();
+    }
+
+    /**
+     * @param delay fixed delay in ms before the request is time stamped, like the request path of the network
+     */
+    LocalNtpResponder setDelay(int delay) {
+        this.delay = delay;
+        return this;
+    }
+
+    /**
+     * @param responseJitter maximum random delay in ms added on the way back, after the transmit time stamp,
+     *                       like asymmetric network queueing
+     */
+    LocalNtpResponder setResponseJitter(int responseJitter) {
+        this.responseJitter = responseJitter;
+        return this;
+    }
+
+    /**
+     * @param lossRate 0..1 probability that a request is silently dropped
+     */
+    LocalNtpResponder setLossRate(double lossRate) {
+        this.lossRate = lossRate;
+        return this;
+    }
+
+    /**
+     * @param shortRate 0..1 probability that the reply is truncated
+     */
+    LocalNtpResponder setShortRate(double shortRate) {
+        this.shortRate = shortRate;
+        return this;
+    }
+
+    /**
+     * @param wrongModeRate 0..1 probability that the reply claims client instead of server mode
+     */
+    LocalNtpResponder setWrongModeRate(double wrongModeRate) {
+        this.wrongModeRate = wrongModeRate;
+        return this;
+    }
+
+    /**
+     * @param corruptRate 0..1 probability that the reply's time stamps are overwritten with garbage
+     */
+    LocalNtpResponder setCorruptRate(double corruptRate) {
+        this.corruptRate = corruptRate;
+        return this;
+    }
+
+    private void serve() {
+        byte[] buffer = new byte[NtpCodec.NTP_PACKET_SIZE];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!socket.isClosed()) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                if (random.nextDouble() < lossRate) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                DatagramPacket reply = new DatagramPacket(buffer.clone(), packet.getLength(), packet.getSocketAddress());
+                int requestDelay = delay;
+                int jitter = responseJitter;
+                int responseDelay = jitter > 0 ? random.nextInt(jitter + 1) : 0;
+                if (requestDelay == 0 && responseDelay == 0) {
+                    reply(reply, 0);
+                } else {
+                    delayed.schedule(() -> reply(reply, responseDelay), requestDelay, TimeUnit.MILLISECONDS);
+                }
+            } catch (SocketException closed) {
+                return;
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void reply(DatagramPacket reply, int responseDelay) {
+        byte[] data = reply.getData();
+        long now = System.currentTimeMillis();
+        answer(data, now, now);
+        applyFault(reply);
+        if (responseDelay > 0) {
+            delayed.schedule(() -> send(reply), responseDelay, TimeUnit.MILLISECONDS);
+        } else {
+            send(reply);
+        }
+    }
+
+    private void applyFault(DatagramPacket reply) {
+        byte[] data = reply.getData();
+        double roll = random.nextDouble();
+        if (roll < shortRate) {
+            reply.setLength(NtpCodec.NTP_PACKET_SIZE / 2);
+        } else if ((roll -= shortRate) < wrongModeRate) {
+            data[0] = (byte) (NtpCodec.NTP_MODE_CLIENT | (NtpCodec.NTP_VERSION << 3));
+        } else if ((roll -= wrongModeRate) < corruptRate) {
+            for (int i = NtpCodec.REFERENCE_TIME_OFFSET; i < NtpCodec.NTP_PACKET_SIZE; i++) {
+                data[i] = (byte) random.nextInt(256);
+            }
+        } else {
+            return;
+        }
+        faulty.incrementAndGet();
+    }
+
+    private void send(DatagramPacket packet) {
+        try {
+            socket.send(packet);
+            served.incrementAndGet();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Turns the client request in the buffer into a server response
+     */
+    static void answer(byte[] buffer, long receiveTime, long transmitTime) {
+        System.arraycopy(buffer, NtpCodec.TRANSMIT_TIME_OFFSET, buffer, NtpCodec.ORIGINATE_TIME_OFFSET, 8);
+        buffer[0] = (byte) (NtpCodec.NTP_MODE_SERVER | (NtpCodec.NTP_VERSION << 3));
+        buffer[1] = 1;//stratum
+        NtpCodec.writeTimeStamp(buffer, NtpCodec.REFERENCE_TIME_OFFSET, receiveTime);
+        NtpCodec.writeTimeStamp(buffer, NtpCodec.RECEIVE_TIME_OFFSET, receiveTime);
+        NtpCodec.writeTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET, transmitTime);
+    }
+
+    @Override
+    public void close() {
+        delayed.shutdownNow();
+        socket.close();
+    }
+}
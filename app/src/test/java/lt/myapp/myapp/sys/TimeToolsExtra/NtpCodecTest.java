@@ -0,0 +1,84 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class NtpCodecTest {
+
+    @Test
+    public void read32_matchesLegacy() {
+        Random random = new Random(42);
+        byte[] buffer = new byte[NtpCodec.NTP_PACKET_SIZE];
+        for (int i = 0; i < 100000; i++) {
+            random.nextBytes(buffer);
+            assertEquals(LegacyNtpCodec.read32(buffer, 8), NtpCodec.read32(buffer, 8));
+        }
+    }
+
+    @Test
+    public void readTimeStamp_matchesLegacy() {
+        Random random = new Random(7);
+        byte[] buffer = new byte[NtpCodec.NTP_PACKET_SIZE];
+        for (int i = 0; i < 100000; i++) {
+            random.nextBytes(buffer);
+            assertEquals(LegacyNtpCodec.readTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET),
+                    NtpCodec.readTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET));
+        }
+    }
+
+    @Test
+    public void writeTimeStamp_roundTripsEveryMillisecond() {
+        byte[] buffer = new byte[NtpCodec.NTP_PACKET_SIZE];
+        long base = 1571700000000L;
+        for (long time = base; time < base + 5000; time++) {
+            NtpCodec.writeTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET, time);
+            assertEquals(time, NtpCodec.readTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET));
+        }
+    }
+
+    @Test
+    public void writeTimeStamp_keepsLegacySecondsAndRandomLowBits() {
+        byte[] legacy = new byte[NtpCodec.NTP_PACKET_SIZE];
+        byte[] current = new byte[NtpCodec.NTP_PACKET_SIZE];
+        long base = 1571700000000L;
+        for (long time = base; time < base + 2000; time++) {
+            LegacyNtpCodec.writeTimeStamp(legacy, 0, time);
+            NtpCodec.writeTimeStamp(current, 0, time);
+            assertEquals(NtpCodec.read32(legacy, 0), NtpCodec.read32(current, 0));
+            // legacy truncates the fraction and randomizes its low byte, we round up to the millisecond and randomize
+            // everything below it, both stay within one millisecond of fraction units
+            long legacyFraction = NtpCodec.read32(legacy, 4);
+            long fraction = NtpCodec.read32(current, 4);
+            assertTrue(Math.abs(fraction - legacyFraction) < (1L << 32) / 1000 + 256);
+        }
+    }
+
+    @Test
+    public void writeTimeStamp_randomizesBelowTheMillisecond() {
+        byte[] buffer = new byte[NtpCodec.NTP_PACKET_SIZE];
+        Set<Long> stamps = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            NtpCodec.writeTimeStamp(buffer, 0, 1571700000999L);
+            assertEquals(1571700000999L, NtpCodec.readTimeStamp(buffer, 0));
+            stamps.add(NtpCodec.readRaw64(buffer, 0));
+        }
+        // same millisecond, yet the raw stamps a response is matched against differ (2^22 values each)
+        assertTrue(stamps.size() > 95);
+    }
+
+    @Test
+    public void writeRequest_clearsBufferAndSetsHeader() {
+        byte[] buffer = new byte[NtpCodec.NTP_PACKET_SIZE];
+        java.util.Arrays.fill(buffer, (byte) 0x5A);
+        NtpCodec.writeRequest(buffer, 1571700000123L);
+        assertEquals(NtpCodec.NTP_MODE_CLIENT, NtpCodec.readMode(buffer));
+        assertEquals(NtpCodec.NTP_VERSION, (buffer[0] >> 3) & 0x7);
+        assertEquals(0L, NtpCodec.readRaw64(buffer, NtpCodec.ORIGINATE_TIME_OFFSET));
+        assertEquals(1571700000123L, NtpCodec.readTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET));
+    }
+}
@@ -0,0 +1,50 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NtpSampleStoreTest {
+
+    private static final long WALL = 1571700000000L;
+    private static final long TICKS = 3600000L;
+
+    // sample taken at TICKS, device clock 250 ms behind the network
+    private static NtpSample sample() {
+        return new NtpSample("time.google.com", WALL - 20, WALL + 250, TICKS, 40, 250);
+    }
+
+    @Test
+    public void sameBoot_restoresSampleExactly() {
+        byte[] record = NtpSampleStore.encode(sample());
+        assertEquals(NtpSampleStore.RECORD_SIZE, record.length);
+
+        NtpSample restored = NtpSampleStore.decode(record, WALL + 60000, TICKS + 60000);
+        assertNotNull(restored);
+        assertEquals(WALL + 250, restored.getNtpTime());
+        assertEquals(TICKS, restored.getNtpTimeReference());
+        assertEquals(40, restored.getRoundTripTime());
+        assertEquals(250, restored.getClockOffset());
+    }
+
+    @Test
+    public void reboot_keepsOffsetAgainstWallClock() {
+        byte[] record = NtpSampleStore.encode(sample());
+        long nowWall = WALL + 600000;
+        long nowTicks = 15000;//booted 15 s ago
+
+        NtpSample restored = NtpSampleStore.decode(record, nowWall, nowTicks);
+        assertNotNull(restored);
+        assertEquals(nowWall + 250, restored.timeAt(nowTicks));
+        // age by the wall clock survives the reboot
+        assertEquals(600000, nowTicks - restored.getNtpTimeReference());
+    }
+
+    @Test
+    public void damagedRecord_isIgnored() {
+        byte[] record = NtpSampleStore.encode(sample());
+        record[12] ^= 1;
+        assertNull(NtpSampleStore.decode(record, WALL, TICKS));
+        assertNull(NtpSampleStore.decode(new byte[NtpSampleStore.RECORD_SIZE], WALL, TICKS));
+    }
+}
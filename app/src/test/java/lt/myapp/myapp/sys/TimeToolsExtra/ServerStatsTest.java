@@ -0,0 +1,51 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ServerStatsTest {
+
+    @Test
+    public void noHistory_usesDefaults() {
+        ServerStats stats = new ServerStats();
+        stats.record(30);
+        assertEquals(-1, stats.percentile(95));
+        assertEquals(5000, stats.getTimeout(5000));
+        assertEquals(-1, stats.getHedgeDelay(5000));
+    }
+
+    @Test
+    public void timeoutFollowsP95() {
+        ServerStats stats = new ServerStats();
+        for (int i = 1; i <= 20; i++) {
+            stats.record(i * 10);//10..200 ms
+        }
+        assertEquals(190, stats.percentile(95));
+        assertEquals(100, stats.percentile(50));
+        assertEquals(760, stats.getTimeout(5000));
+        assertEquals(190, stats.getHedgeDelay(760));
+        // capped by the caller
+        assertEquals(500, stats.getTimeout(500));
+    }
+
+    @Test
+    public void fastServer_keepsMinimumTimeout() {
+        ServerStats stats = new ServerStats();
+        for (int i = 0; i < ServerStats.WINDOW * 2; i++) {
+            stats.record(2);
+        }
+        assertEquals(ServerStats.MIN_TIMEOUT, stats.getTimeout(5000));
+        assertEquals(ServerStats.MIN_HEDGE_DELAY, stats.getHedgeDelay(ServerStats.MIN_TIMEOUT));
+    }
+
+    @Test
+    public void backoff_isJitteredAndGrows() {
+        for (int i = 0; i < 1000; i++) {
+            long first = SNTPClient.backoff(1);
+            long second = SNTPClient.backoff(2);
+            assertTrue(first >= 100 && first <= 300);
+            assertTrue(second >= 200 && second <= 600);
+        }
+    }
+}
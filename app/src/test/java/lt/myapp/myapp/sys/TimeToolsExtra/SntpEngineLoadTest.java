@@ -0,0 +1,151 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SntpEngineLoadTest {
+
+    @ClassRule
+    public static final JvmTicks TICKS = new JvmTicks();
+
+    private static final int REQUESTS = 2000;
+
+    private LocalNtpResponder responder;
+    private SntpEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        responder = new LocalNtpResponder();
+        engine = new SntpEngine();
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+        responder.close();
+        SntpState.reset();
+    }
+
+    @Test
+    public void manyRequests_oneEngineThread() throws Exception {
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        SNTPClient.Listener listener = new SNTPClient.Listener() {
+            @Override
+            public void onTimeReceived(long requestTime, long serverTime, long offset) {
+                received.incrementAndGet();
+                done.countDown();
+            }
+
+            @Override
+            public void onError(long requestTime, Exception ex) {
+                errors.incrementAndGet();
+                done.countDown();
+            }
+        };
+
+        // a cold lookup would go to the TimeExecutor pool, this test counts the engine's threads only
+        HostResolver.getInstance().resolve(responder.getHost());
+        int threadsBefore = Thread.activeCount();
+        long start = System.nanoTime();
+        int peakThreads = threadsBefore;
+        for (int i = 0; i < REQUESTS; i++) {
+            engine.request(responder.getHost(), responder.getPort(), 5000, listener);
+            if (i % 100 == 0) {
+                peakThreads = Math.max(peakThreads, Thread.activeCount());
+            }
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+
+        String report = String.format("%d requests in %d ms, %d ok, %d errors, threads %d -> peak %d",
+                REQUESTS, TimeUnit.NANOSECONDS.toMillis(elapsed), received.get(), errors.get(), threadsBefore, peakThreads);
+        assertEquals(report, REQUESTS, received.get() + errors.get());
+        assertTrue("most requests should succeed on loopback: " + report, received.get() > REQUESTS * 9 / 10);
+        // the engine thread already exists, so no request may add threads
+        assertTrue(report, peakThreads <= threadsBefore + 1);
+    }
+
+    @Test
+    public void slowLookup_doesntHoldUpOtherRequests() throws Exception {
+        CountDownLatch lookupReleased = new CountDownLatch(1);
+        HostResolver resolver = new HostResolver(host -> {
+            if (host.equals("slow.test")) {
+                try {
+                    lookupReleased.await(5, TimeUnit.SECONDS);//a dns server that doesn't answer
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return InetAddress.getLoopbackAddress();
+        }, HostResolver.DEFAULT_TTL, HostResolver.DEFAULT_NEGATIVE_TTL);
+        SntpEngine isolated = new SntpEngine(resolver);
+        try {
+            CountDownLatch slow = new CountDownLatch(1);
+            CountDownLatch fast = new CountDownLatch(10);
+            isolated.request("slow.test", responder.getPort(), 5000, countDown(slow));
+            for (int i = 0; i < 10; i++) {
+                isolated.request(responder.getHost(), responder.getPort(), 1000, countDown(fast));
+            }
+            assertTrue(fast.await(2, TimeUnit.SECONDS));
+            assertEquals(1, slow.getCount());//still resolving, off the engine thread
+
+            lookupReleased.countDown();
+            assertTrue(slow.await(2, TimeUnit.SECONDS));
+        } finally {
+            lookupReleased.countDown();
+            isolated.shutdown();
+        }
+    }
+
+    private static SNTPClient.Listener countDown(CountDownLatch latch) {
+        return new SNTPClient.Listener() {
+            @Override
+            public void onTimeReceived(long requestTime, long serverTime, long offset) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(long requestTime, Exception ex) {
+            }
+        };
+    }
+
+    @Test
+    public void silentServer_timesOut() throws Exception {
+        DatagramSocket silent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        try {
+            CountDownLatch done = new CountDownLatch(1);
+            AtomicReference<Exception> error = new AtomicReference<>();
+            engine.request(responder.getHost(), silent.getLocalPort(), 200, new SNTPClient.Listener() {
+                @Override
+                public void onTimeReceived(long requestTime, long serverTime, long offset) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(long requestTime, Exception ex) {
+                    error.set(ex);
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(error.get() instanceof SocketTimeoutException);
+        } finally {
+            silent.close();
+        }
+    }
+}
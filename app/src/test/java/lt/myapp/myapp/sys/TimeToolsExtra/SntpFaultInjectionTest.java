@@ -0,0 +1,113 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.*;
+
+public class SntpFaultInjectionTest {
+
+    @ClassRule
+    public static final JvmTicks TICKS = new JvmTicks();
+
+    private LocalNtpResponder responder;
+
+    @BeforeClass
+    public static void mainThread() {
+        // there is no main looper in local unit tests, deliver "main thread" callbacks in place
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(callable -> Schedulers.trampoline());
+        RxAndroidPlugins.setMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+    }
+
+    @AfterClass
+    public static void resetMainThread() {
+        RxAndroidPlugins.reset();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        responder = new LocalNtpResponder();
+        SNTPClient.sDefaultPort = responder.getPort();
+    }
+
+    @After
+    public void tearDown() {
+        responder.close();
+        SntpState.reset();
+    }
+
+    private SNTPClient request(int timeout) {
+        SNTPClient client = new SNTPClient(null);
+        client.requestTime(responder.getHost(), timeout);
+        return client;
+    }
+
+    @Test
+    public void healthyServer_answers() {
+        SNTPClient client = request(1000);
+        assertTrue(client.isRequestResult());
+        assertEquals(0, client.getClockOffset(), 50);
+        assertTrue(client.getRoundTripTime() >= 0);
+    }
+
+    @Test
+    public void lostPackets_timeOut() {
+        responder.setLossRate(1);
+        SNTPClient client = request(200);
+        assertFalse(client.isRequestResult());
+        assertTrue(client.getException() instanceof SocketTimeoutException);
+        assertEquals(1, responder.getDropped());
+    }
+
+    @Test
+    public void shortReplies_areIgnored() {
+        responder.setShortRate(1);
+        assertFalse(request(200).isRequestResult());
+        assertEquals(1, responder.getFaulty());
+    }
+
+    @Test
+    public void wrongModeReplies_areIgnored() {
+        responder.setWrongModeRate(1);
+        assertFalse(request(200).isRequestResult());
+        assertEquals(1, responder.getFaulty());
+    }
+
+    @Test
+    public void corruptedReplies_areIgnored() {
+        responder.setCorruptRate(1);
+        assertFalse(request(200).isRequestResult());
+        assertEquals(1, responder.getFaulty());
+    }
+
+    @Test
+    public void delayedReplies_showInRoundTrip() {
+        responder.setDelay(30);
+        SNTPClient client = request(1000);
+        assertTrue(client.isRequestResult());
+        assertTrue(client.getRoundTripTime() >= 25);
+    }
+
+    @Test
+    public void loadGenerator_reportsEveryEntryPoint() throws Exception {
+        for (int i = 0; i < ServerStats.MIN_SAMPLES * 2; i++) {
+            request(1000);//round trip history, so getDate sizes its timeout instead of waiting 5 s per lost packet
+        }
+        responder.setResponseJitter(5).setLossRate(0.05);
+        SntpLoadGenerator generator = new SntpLoadGenerator(responder.getHost(), 300);
+        for (SntpLoadGenerator.Target target : SntpLoadGenerator.Target.values()) {
+            SntpLoadGenerator.Report report = generator.run(target, 100, 1000);
+            assertEquals(report.toString(), report.sent, report.ok + report.errors);
+            assertTrue(report.toString(), report.ok > report.sent / 2);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives time requests at a fixed rate against a server and reports throughput and latency percentiles.
+ * <p>
+ * Latency is measured from issuing the call to the listener callback (or the return of requestTime).
+ */
+class SntpLoadGenerator {
+
+    enum Target {
+        REQUEST_TIME,
+        GET_DATE,
+        GET_DATE_ANR
+    }
+
+    /**
+     * Results of one run
+     */
+    static final class Report {
+        final Target target;
+        final long sent;
+        final long ok;
+        final long errors;
+        final double throughput;//completed per second
+        final Histogram.Snapshot latency;
+
+        Report(Target target, long sent, long ok, long errors, double throughput, Histogram.Snapshot latency) {
+            this.target = target;
+            this.sent = sent;
+            this.ok = ok;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.latency = latency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: sent=%d ok=%d errors=%d throughput=%.1f/s latency(ms) %s",
+                    target, sent, ok, errors, throughput, latency);
+        }
+    }
+
+    private final String host;
+    private final int timeout;
+
+    SntpLoadGenerator(String host, int timeout) {
+        this.host = host;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Issues requests at the rate for the duration and waits for every one of them to complete
+     *
+     * @param target     which SNTPClient entry point to drive
+     * @param ratePerSec requests issued per second
+     * @param durationMs how long to keep issuing
+     */
+    Report run(Target target, int ratePerSec, long durationMs) throws InterruptedException {
+        int total = (int) (ratePerSec * durationMs / 1000);
+        CountDownLatch done = new CountDownLatch(total);
+        Histogram latency = new Histogram();
+        AtomicLong ok = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        // requestTime blocks, give it enough threads to keep up with the rate
+        ExecutorService blocking = Executors.newFixedThreadPool(16);
+
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSec;
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long issueAt = start + i * periodNanos;
+            long sleep = issueAt - System.nanoTime();
+            if (sleep > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            }
+            long issued = System.nanoTime();
+            SNTPClient.Listener listener = new SNTPClient.Listener() {
+                @Override
+                public void onTimeReceived(long requestTime, long serverTime, long offset) {
+                    latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - issued));
+                    ok.incrementAndGet();
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(long requestTime, Exception ex) {
+                    latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - issued));
+                    errors.incrementAndGet();
+                    done.countDown();
+                }
+            };
+            switch (target) {
+                case REQUEST_TIME:
+                    blocking.execute(() -> {
+                        SNTPClient client = new SNTPClient(listener);
+                        client.requestTime(host, timeout);
+                        if (client.isRequestResult()) {
+                            listener.onTimeReceived(client.getRequestTime(), client.getNtpTime(), client.getClockOffset());
+                        } else {
+                            listener.onError(client.getRequestTime(), client.getException());
+                        }
+                    });
+                    break;
+                case GET_DATE:
+                    SNTPClient.getDate(host, listener);
+                    break;
+                case GET_DATE_ANR:
+                    SNTPClient.getDateANR(host, listener);
+                    break;
+            }
+        }
+        // getDate and getDateANR use their own timeouts and retries, leave room for those
+        done.await(durationMs + 20000, TimeUnit.MILLISECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        blocking.shutdownNow();
+        return new Report(target, total, ok.get(), errors.get(), (ok.get() + errors.get()) / seconds, latency.snapshot());
+    }
+}
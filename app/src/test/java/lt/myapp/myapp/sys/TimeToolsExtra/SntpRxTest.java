@@ -0,0 +1,109 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subscribers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class SntpRxTest {
+
+    @ClassRule
+    public static final JvmTicks TICKS = new JvmTicks();
+
+    private LocalNtpResponder responder;
+
+    @Before
+    public void setUp() throws Exception {
+        responder = new LocalNtpResponder();
+        SNTPClient.sDefaultPort = responder.getPort();
+    }
+
+    @After
+    public void tearDown() {
+        responder.close();
+        SntpState.reset();
+    }
+
+    private List<String> pool() {
+        return Collections.singletonList(responder.getHost());
+    }
+
+    @Test
+    public void sample_emitsOneSample() throws Exception {
+        TestObserver<NtpSample> observer = SntpRx.sample(responder.getHost(), 1000).test();
+        assertTrue(observer.await(2, TimeUnit.SECONDS));
+        observer.assertValueCount(1);
+        NtpSample sample = observer.values().get(0);
+        assertEquals(responder.getHost(), sample.getHost());
+        assertEquals(0, sample.getClockOffset(), 50);
+    }
+
+    @Test
+    public void poolSample_failsWhenNobodyAnswers() throws Exception {
+        responder.setLossRate(1);
+        TestObserver<NtpSample> observer = SntpRx.sample(pool(), SNTPClient.PoolMode.FIRST_GOOD, 200).test();
+        assertTrue(observer.await(2, TimeUnit.SECONDS));
+        observer.assertError(SocketTimeoutException.class);
+    }
+
+    @Test
+    public void timeout_cancelsSlowRequest() throws Exception {
+        responder.setDelay(1000);
+        TestObserver<NtpSample> observer = SntpRx.sample(responder.getHost(), 3000)
+                .compose(SntpRx.timeout(100))
+                .test();
+        assertTrue(observer.await(500, TimeUnit.MILLISECONDS));
+        observer.assertError(SocketTimeoutException.class);
+    }
+
+    @Test
+    public void fallback_asksNextServer() throws Exception {
+        TestObserver<NtpSample> observer = Single.<NtpSample>error(new IOException("primary down"))
+                .compose(SntpRx.fallbackTo(Collections.singletonList(responder.getHost()), 1000))
+                .test();
+        assertTrue(observer.await(2, TimeUnit.SECONDS));
+        observer.assertValueCount(1);
+    }
+
+    @Test
+    public void periodic_sharesOneSyncBetweenSubscribers() throws Exception {
+        Flowable<NtpSample> samples = SntpRx.periodic(pool(), 100, TimeUnit.MILLISECONDS);
+        TestSubscriber<NtpSample> first = samples.test();
+        TestSubscriber<NtpSample> second = samples.test();
+        first.awaitCount(4);
+        second.awaitCount(4);
+        first.dispose();
+        second.dispose();
+
+        first.assertNoErrors();
+        assertTrue(first.valueCount() >= 4);
+        // one request per tick, not one per subscriber
+        assertTrue(responder.getServed() <= Math.max(first.valueCount(), second.valueCount()) + 1);
+    }
+
+    @Test
+    public void periodic_slowConsumerGetsLatest() throws Exception {
+        TestSubscriber<NtpSample> slow = SntpRx.periodic(pool(), 50, TimeUnit.MILLISECONDS).test(0);
+        Thread.sleep(400);
+        slow.assertNoValues();
+        slow.request(1);
+        slow.awaitCount(1);
+        slow.dispose();
+
+        slow.assertNoErrors();//no MissingBackpressureException while nothing was requested
+        assertTrue(slow.values().get(0).getAge() < 200);//not the first sample, that one is ~400 ms old
+    }
+}
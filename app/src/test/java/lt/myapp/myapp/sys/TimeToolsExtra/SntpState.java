@@ -0,0 +1,19 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+/**
+ * Static state the sntp classes share across tests: round trip history, metrics, the dns cache and resolver, single flight
+ * requests and the default port. Tests touching them call {@link #reset()} in their @After, so they pass in any order.
+ */
+final class SntpState {
+
+    private SntpState() {
+    }
+
+    static void reset() {
+        SNTPClient.reset();
+        ServerStats.reset();
+        SntpMetrics.reset();
+        HostResolver.setInstance(HostResolver.SYSTEM);
+        HostResolver.SYSTEM.clear();
+    }
+}
@@ -0,0 +1,195 @@
+package lt.myapp.myapp.sys.TimeToolsExtra;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+import io.reactivex.Single;
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.*;
+
+public class TimeRequestTest implements LifecycleOwner {
+
+    @ClassRule
+    public static final JvmTicks TICKS = new JvmTicks();
+
+    private LocalNtpResponder responder;
+    private LifecycleRegistry lifecycle;
+    private CountingListener listener;
+
+    @BeforeClass
+    public static void mainThread() {
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(callable -> Schedulers.trampoline());
+        RxAndroidPlugins.setMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+    }
+
+    @AfterClass
+    public static void resetMainThread() {
+        RxAndroidPlugins.reset();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        responder = new LocalNtpResponder();
+        SNTPClient.sDefaultPort = responder.getPort();
+        lifecycle = new LifecycleRegistry(this);
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_CREATE);
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_START);
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_RESUME);
+        listener = new CountingListener();
+    }
+
+    @After
+    public void tearDown() {
+        responder.close();
+        SntpState.reset();
+    }
+
+    @Override
+    public Lifecycle getLifecycle() {
+        return lifecycle;
+    }
+
+    private void destroy() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_PAUSE);
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+    }
+
+    @Test
+    public void answer_isDeliveredOnceAndUnbinds() throws Exception {
+        TimeRequest request = SNTPClient.getDate(responder.getHost(), listener).bindTo(this);
+        assertTrue(listener.done.await(2, TimeUnit.SECONDS));
+        assertEquals(1, listener.times.get());
+        assertTrue(request.isDisposed());
+        assertEquals(0, lifecycle.getObserverCount());
+    }
+
+    @Test
+    public void dispose_closesSocketAndDropsCallback() throws Exception {
+        responder.setDelay(500);
+        SntpMetrics.Server metrics = SntpMetrics.forServer(responder.getHost());
+        long cancels = metrics.cancels.get();
+
+        TimeRequest request = SNTPClient.getDateANR(responder.getHost(), listener);
+        Thread.sleep(100);
+        request.dispose();
+
+        // the blocked receive is unblocked by closing the socket, long before the 5 s timeout
+        long deadline = System.currentTimeMillis() + 300;
+        while (metrics.cancels.get() == cancels && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(metrics.cancels.get() > cancels);
+        assertFalse(listener.done.await(700, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void destroyedLifecycle_cancelsRequest() throws Exception {
+        responder.setDelay(300);
+        TimeRequest request = SNTPClient.getDate(responder.getHost(), listener).bindTo(this);
+        destroy();
+        assertTrue(request.isDisposed());
+        assertFalse(listener.done.await(600, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void bindingToDeadLifecycle_cancelsAtOnce() throws Exception {
+        responder.setDelay(300);
+        destroy();
+        TimeRequest request = SNTPClient.getDateBurst(responder.getHost(), listener).bindTo(this);
+        assertTrue(request.isDisposed());
+        assertFalse(listener.done.await(600, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void sharedRequest_survivesOneCallerLeaving() throws Exception {
+        responder.setDelay(200);
+        CountingListener other = new CountingListener();
+        TimeRequest first = SNTPClient.getDate(responder.getHost(), listener);
+        SNTPClient.getDate(responder.getHost(), other);
+        first.dispose();
+        assertTrue(other.done.await(2, TimeUnit.SECONDS));
+        assertEquals(1, other.times.get());
+        assertEquals(0, listener.times.get());
+    }
+
+    @Test
+    public void sharedRequest_isKeyedByTimeoutToo() {
+        Single<SNTPClient> shortOne = SNTPClient.requestShared(responder.getHost(), 1000);
+        Single<SNTPClient> longOne = SNTPClient.requestShared(responder.getHost(), 2000);
+        assertSame(shortOne, SNTPClient.requestShared(responder.getHost(), 1000));
+        assertNotSame(shortOne, longOne);
+        // run both to the end, so they leave the in flight map
+        assertTrue(shortOne.blockingGet().isRequestResult());
+        assertTrue(longOne.blockingGet().isRequestResult());
+    }
+
+    @Test
+    public void cancelDuringDnsLookup_sendsNothing() throws Exception {
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch resolved = new CountDownLatch(1);
+        HostResolver.setInstance(new HostResolver(host -> {
+            resolving.countDown();
+            // a slow dns server, like InetAddress.getByName it doesn't give up when the thread is interrupted
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    resolved.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return InetAddress.getLoopbackAddress();
+        }, 60000, 60000));
+        SntpMetrics.Server metrics = SntpMetrics.forServer("slow.test");
+
+        TimeRequest request = SNTPClient.getDateBurst("slow.test", TimeExecutor.direct(), listener);
+        assertTrue(resolving.await(2, TimeUnit.SECONDS));
+        request.dispose();
+        resolved.countDown();
+
+        // the request gives up as soon as the lookup returns instead of waiting out the 5 s timeout
+        long deadline = System.currentTimeMillis() + 1000;
+        while (metrics.cancels.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, metrics.cancels.get());
+        assertEquals(0, responder.getServed());
+        assertFalse(listener.done.await(300, TimeUnit.MILLISECONDS));
+    }
+
+    private static class CountingListener implements SNTPClient.Listener {
+        final AtomicInteger times = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onTimeReceived(long requestTime, long serverTime, long offset) {
+            times.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void onError(long requestTime, Exception ex) {
+            times.incrementAndGet();
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package lt.myapp.myapp.sys.Watchdog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
+
+import lt.myapp.myapp.sys.TimeToolsExtra.NtpSampleStore;
+
+import static org.junit.Assert.*;
+
+public class MainThreadGuardTest {
+
+    @Before
+    public void setUp() {
+        MainThreadGuard.reset();
+        MainThreadGuard.setMainThread(Thread.currentThread());//this test thread plays the main thread
+    }
+
+    @After
+    public void tearDown() {
+        MainThreadGuard.reset();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void strict_throwsOnMainThread() {
+        MainThreadGuard.setStrict(true);
+        MainThreadGuard.checkNotMain("test.call");
+    }
+
+    @Test
+    public void strict_allowsOtherThreads() throws Exception {
+        MainThreadGuard.setStrict(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            try {
+                MainThreadGuard.checkNotMain("test.call");
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        worker.start();
+        worker.join();
+        assertNull(failure.get());
+        assertTrue(MainThreadGuard.getViolations().isEmpty());
+    }
+
+    @Test
+    public void lenient_countsViolationsPerEntryPoint() {
+        MainThreadGuard.setSampleRate(5);
+        for (int i = 0; i < 12; i++) {
+            MainThreadGuard.checkNotMain("a");
+        }
+        MainThreadGuard.checkNotMain("b");
+        assertEquals(Long.valueOf(12), MainThreadGuard.getViolations().get("a"));
+        assertEquals(Long.valueOf(1), MainThreadGuard.getViolations().get("b"));
+    }
+
+    @Test
+    public void noMainLooper_neverViolates() {
+        MainThreadGuard.reset();//local unit tests have no main looper
+        MainThreadGuard.setStrict(true);
+        MainThreadGuard.checkNotMain("test.call");
+        assertTrue(MainThreadGuard.getViolations().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void blockingEntryPoint_isGuarded() {
+        MainThreadGuard.setStrict(true);
+        new NtpSampleStore(new File("missing")).load();
+    }
+}
@@ -0,0 +1,187 @@
+package lt.myapp.myapp.sys.Watchdog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the watch loop round by round with a fake clock and a queue standing in for the main looper, nothing
+ * depends on how fast the machine is.
+ */
+public class MainThreadWatchdogTest {
+
+    private static final long INTERVAL = 20;//ms
+    private static final long THRESHOLD = 100;//ms
+
+    private File dir;
+    private final List<Runnable> posted = new ArrayList<>();
+    private long now = TimeUnit.SECONDS.toNanos(1);//0 means no tick is waiting
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Thread mainRef;
+    private MainThreadWatchdog watchdog;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("stalls").toFile();
+        // the watched thread, parked in block() so its stack is known
+        mainRef = new Thread(() -> block(release), "test-main");
+        mainRef.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mainRef.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, mainRef.getState());
+        MainThreadPosts.reset();
+        watchdog = new MainThreadWatchdog(posted::add, mainRef, new StallReportRing(dir), INTERVAL, THRESHOLD,
+                () -> now, millis -> {
+            throw new AssertionError("rounds are driven by the test");
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watchdog.stop();
+        release.countDown();
+        mainRef.join(5000);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private void advance(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Runs what was posted to the "main thread"
+     */
+    private void runMain() {
+        List<Runnable> due = new ArrayList<>(posted);
+        posted.clear();
+        for (Runnable runnable : due) {
+            runnable.run();
+        }
+    }
+
+    @Test
+    public void responsiveMainThread_noReports() {
+        for (int i = 0; i < 50; i++) {
+            watchdog.check();
+            advance(INTERVAL);
+            runMain();
+        }
+        assertEquals(0, watchdog.getStalls());
+        assertEquals(0, watchdog.getReports().length);
+    }
+
+    @Test
+    public void stall_isReportedOnceWithStacksAndPoster() throws Exception {
+        Runnable blocker = () -> {
+        };
+        Thread worker = new Thread(() -> MainThreadPosts.record(blocker), "sntp-7");
+        worker.start();
+        worker.join();
+
+        watchdog.check();//posts a tick the main thread doesn't run
+        advance(THRESHOLD - 1);
+        watchdog.check();
+        assertEquals(0, watchdog.getStalls());
+
+        advance(1);
+        watchdog.check();
+        advance(10 * THRESHOLD);
+        watchdog.check();//still the same stall
+        assertEquals(1, watchdog.getStalls());
+        File[] reports = watchdog.getReports();
+        assertEquals(1, reports.length);
+
+        String report = read(reports[0]);
+        assertTrue(report, report.contains("stalled for at least " + THRESHOLD + " ms"));
+        assertTrue(report, report.contains("last post: sntp-7 posted"));
+        assertTrue(report, report.contains("\"test-main\""));
+        assertTrue(report, report.contains(MainThreadWatchdogTest.class.getName() + ".block"));
+    }
+
+    @Test
+    public void secondStall_getsItsOwnReport() {
+        watchdog.check();
+        advance(THRESHOLD);
+        watchdog.check();
+
+        runMain();//the main thread catches up, the next tick starts a new wait
+        watchdog.check();
+        advance(THRESHOLD);
+        watchdog.check();
+
+        assertEquals(2, watchdog.getStalls());
+        assertEquals(2, watchdog.getReports().length);
+    }
+
+    @Test
+    public void loop_sleepsTheIntervalBetweenRounds() throws Exception {
+        List<Long> sleeps = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        watchdog = new MainThreadWatchdog(posted::add, mainRef, new StallReportRing(dir), INTERVAL, 2 * INTERVAL,
+                () -> now, millis -> {
+            sleeps.add(millis);
+            advance(millis);
+            if (sleeps.size() == 3) {
+                done.countDown();
+                throw new InterruptedException();//ends the loop
+            }
+        });
+        watchdog.start();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // post, waited 20 ms, waited 40 ms: reported
+        assertEquals(3, sleeps.size());
+        assertEquals(Long.valueOf(INTERVAL), sleeps.get(2));
+        assertEquals(1, posted.size());
+        assertEquals(1, watchdog.getStalls());
+    }
+
+    @Test
+    public void ring_keepsNewestReports() throws Exception {
+        StallReportRing ring = new StallReportRing(dir, 3, 16);
+        for (int i = 0; i < 5; i++) {
+            ring.write("report " + i + " with a long tail");
+        }
+        File[] reports = ring.list();
+        assertEquals(3, reports.length);
+        assertEquals("stall-2.txt", reports[0].getName());
+        assertEquals("report 4 with a ", read(reports[2]));//cut to 16 bytes
+
+        // a new ring over the same folder continues the sequence
+        new StallReportRing(dir, 3, 16).write("after restart");
+        reports = ring.list();
+        assertEquals("stall-5.txt", reports[2].getName());
+        assertEquals("stall-3.txt", reports[0].getName());
+    }
+
+    private static void block(CountDownLatch release) {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
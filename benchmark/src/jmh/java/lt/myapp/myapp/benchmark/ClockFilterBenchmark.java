@@ -0,0 +1,88 @@
+package lt.myapp.myapp.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import lt.myapp.myapp.sys.TimeToolsExtra.ClockFilter;
+import lt.myapp.myapp.sys.TimeToolsExtra.NtpSample;
+
+/**
+ * Offset accuracy of single requests against bursts picked by the ClockFilter.
+ * <p>
+ * Replays a network whose response path is delayed by up to {@link #JITTER} ms on top of the fixed path delay
+ * (asymmetric jitter, like LocalNtpResponder.setResponseJitter in the app tests). The true offset is 0, so every
+ * millisecond an answer reports is error: errorMillis / answers of a run is its mean offset error, the burst one
+ * should be well below the single one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ClockFilterBenchmark {
+
+    private static final int BURST_SIZE = 4;//SNTPClient.BURST_SIZE, the client itself isn't compiled here
+    private static final int PATH_DELAY = 2;//ms each way
+    private static final int JITTER = 40;//ms
+
+    /**
+     * Offset error summed over the answers of an iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Accuracy {
+        public long errorMillis;
+        public long answers;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            errorMillis = 0;
+            answers = 0;
+        }
+
+        void record(NtpSample answer) {
+            errorMillis += Math.abs(answer.getClockOffset());
+            answers++;
+        }
+    }
+
+    private final Random random = new Random(1);
+    private final List<NtpSample> burst = new ArrayList<>(BURST_SIZE);
+    private long ticks;
+
+    private NtpSample packet() {
+        long responseDelay = PATH_DELAY + random.nextInt(JITTER + 1);
+        long roundTrip = PATH_DELAY + responseDelay;
+        long offset = (PATH_DELAY - responseDelay) / 2;
+        ticks += roundTrip;
+        return new NtpSample("bench", ticks, ticks + offset, ticks, roundTrip, offset);
+    }
+
+    @Benchmark
+    public NtpSample single(Accuracy accuracy) {
+        NtpSample answer = packet();
+        accuracy.record(answer);
+        return answer;
+    }
+
+    @Benchmark
+    public NtpSample burst(Accuracy accuracy) {
+        burst.clear();
+        for (int i = 0; i < BURST_SIZE; i++) {
+            burst.add(packet());
+        }
+        NtpSample answer = ClockFilter.select(burst);
+        accuracy.record(answer);
+        return answer;
+    }
+}
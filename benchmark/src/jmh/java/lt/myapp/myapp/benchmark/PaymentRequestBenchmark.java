@@ -0,0 +1,68 @@
+package lt.myapp.myapp.benchmark;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import lt.myapp.myapp.Payment.GooglePayRequestBuilder;
+import lt.myapp.myapp.Payment.PaymentConfig;
+import lt.myapp.myapp.Payment.PaymentRequestTemplate;
+import lt.myapp.myapp.Payment.PaymentRequests;
+
+/**
+ * Building the Google Pay request objects, including the toString() that PaymentsUtil hands to
+ * IsReadyToPayRequest.fromJson and PaymentDataRequest.fromJson.
+ * <p>
+ * paymentDataRequestTemplate is the same string as paymentDataRequestJson, spliced from the per config template.
+ * The *Writer ones stream the same documents with a reused GooglePayRequestBuilder, without the copy to a String.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaymentRequestBenchmark {
+
+    private final String price = "12.34";
+    private final PaymentRequestTemplate template = PaymentRequestTemplate.forConfig(PaymentConfig.DEFAULT);
+    private final GooglePayRequestBuilder builder = new GooglePayRequestBuilder().config(PaymentConfig.DEFAULT);
+
+    @Benchmark
+    public JSONObject isReadyToPayRequest() {
+        return PaymentRequests.getIsReadyToPayRequest();
+    }
+
+    @Benchmark
+    public String isReadyToPayRequestJson() {
+        return PaymentRequests.getIsReadyToPayRequest().toString();
+    }
+
+    @Benchmark
+    public JSONObject paymentDataRequest() {
+        return PaymentRequests.getPaymentDataRequest(price);
+    }
+
+    @Benchmark
+    public String paymentDataRequestJson() {
+        return PaymentRequests.getPaymentDataRequest(price).toString();
+    }
+
+    @Benchmark
+    public String paymentDataRequestTemplate() {
+        return template.render(price);
+    }
+
+    @Benchmark
+    public CharSequence isReadyToPayRequestWriter() {
+        return builder.writeIsReadyToPayRequest();
+    }
+
+    @Benchmark
+    public CharSequence paymentDataRequestWriter() {
+        return builder.totalPrice(price).writePaymentDataRequest();
+    }
+}
@@ -0,0 +1,65 @@
+package lt.myapp.myapp.benchmark;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import lt.myapp.myapp.Payment.PaymentMethodData;
+
+/**
+ * Parsing a PaymentData response the way PaymentsUtil.handlePaymentSuccess and
+ * handleTestPayment did with org.json, and with the one pass PaymentMethodData.parse they use now.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaymentResponseBenchmark {
+
+    /** shape of PaymentData.toJson() for a gateway tokenized card with a full billing address */
+    static final String PAYMENT_DATA = "{"
+            + "\"apiVersion\":2,\"apiVersionMinor\":0,"
+            + "\"paymentMethodData\":{"
+            + "\"description\":\"Visa \u2022\u2022\u2022\u2022 1234\","
+            + "\"info\":{"
+            + "\"cardNetwork\":\"VISA\",\"cardDetails\":\"1234\","
+            + "\"billingAddress\":{"
+            + "\"phoneNumber\":\"+37060000000\",\"address3\":\"\",\"sortingCode\":\"\","
+            + "\"address2\":\"\",\"countryCode\":\"LT\",\"address1\":\"Gedimino pr. 1\","
+            + "\"postalCode\":\"01103\",\"name\":\"Jonas Jonaitis\",\"locality\":\"Vilnius\","
+            + "\"administrativeArea\":\"\"}},"
+            + "\"type\":\"CARD\","
+            + "\"tokenizationData\":{"
+            + "\"type\":\"PAYMENT_GATEWAY\","
+            + "\"token\":\"examplePaymentMethodToken\"}}}";
+
+    @Benchmark
+    public void handlePaymentSuccess(Blackhole blackhole) throws JSONException {
+        JSONObject paymentMethodData = new JSONObject(PAYMENT_DATA).getJSONObject("paymentMethodData");
+        blackhole.consume(paymentMethodData.getJSONObject("info").getJSONObject("billingAddress").getString("name"));
+        blackhole.consume(paymentMethodData.getJSONObject("tokenizationData").getString("token"));
+    }
+
+    @Benchmark
+    public boolean handleTestPayment() throws JSONException {
+        JSONObject paymentMethodData = new JSONObject(PAYMENT_DATA).getJSONObject("paymentMethodData");
+        return paymentMethodData.getJSONObject("tokenizationData").getString("type").equals("PAYMENT_GATEWAY")
+                && paymentMethodData.getJSONObject("tokenizationData").getString("token").equals("examplePaymentMethodToken");
+    }
+
+    @Benchmark
+    public void paymentMethodDataParse(Blackhole blackhole) throws JSONException {
+        PaymentMethodData paymentMethodData = PaymentMethodData.parse(PAYMENT_DATA);
+        blackhole.consume(paymentMethodData.getBillingName());
+        blackhole.consume(paymentMethodData.getToken());
+        blackhole.consume(paymentMethodData.getTokenizationType().equals("PAYMENT_GATEWAY")
+                && paymentMethodData.getToken().equals("examplePaymentMethodToken"));
+    }
+}
@@ -0,0 +1,48 @@
+package lt.myapp.myapp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import lt.myapp.myapp.Payment.Money;
+import lt.myapp.myapp.Payment.PaymentRequests;
+
+/**
+ * Micros to price conversion done on every Pay button click.
+ * <p>
+ * moneyFormatTo appends into a reused buffer like a price list does, without the String copy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PriceFormatBenchmark {
+
+    /** whole amount, one that needs rounding, and a large one */
+    @Param({"1000000", "12345678", "987654321012"})
+    public long micros;
+
+    private final StringBuilder buffer = new StringBuilder(32);
+
+    @Benchmark
+    public String microsToString() {
+        return PaymentRequests.microsToString(micros);
+    }
+
+    @Benchmark
+    public BigDecimal microsToBigDecimal() {
+        return PaymentRequests.microsToBigDecimal(micros);
+    }
+
+    @Benchmark
+    public CharSequence moneyFormatTo() {
+        buffer.setLength(0);
+        return Money.formatTo(micros, 2, buffer);
+    }
+}
@@ -0,0 +1,63 @@
+package lt.myapp.myapp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import lt.myapp.myapp.sys.TimeToolsExtra.NtpCodec;
+
+/**
+ * NTP timestamp encode/decode as done by SNTPClient for every request and response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeStampCodecBenchmark {
+
+    private final byte[] buffer = new byte[NtpCodec.NTP_PACKET_SIZE];
+    private long time;
+
+    @Setup
+    public void setUp() {
+        time = 1571700000123L;
+        NtpCodec.writeRequest(buffer, time);
+        buffer[0] = (byte) ((NtpCodec.NTP_VERSION << 3) | NtpCodec.NTP_MODE_SERVER);
+        NtpCodec.writeTimeStamp(buffer, NtpCodec.ORIGINATE_TIME_OFFSET, time);
+        NtpCodec.writeTimeStamp(buffer, NtpCodec.RECEIVE_TIME_OFFSET, time + 7);
+    }
+
+    @Benchmark
+    public byte[] writeTimeStamp() {
+        NtpCodec.writeTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET, ++time);
+        return buffer;
+    }
+
+    @Benchmark
+    public long readTimeStamp() {
+        return NtpCodec.readTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET);
+    }
+
+    @Benchmark
+    public byte[] writeRequest() {
+        NtpCodec.writeRequest(buffer, ++time);
+        return buffer;
+    }
+
+    @Benchmark
+    public long readResponse() {
+        // what SNTPClient reads from a server packet before the offset math
+        if (!NtpCodec.isResponseTo(buffer, NtpCodec.NTP_PACKET_SIZE,
+                NtpCodec.readRaw64(buffer, NtpCodec.ORIGINATE_TIME_OFFSET))) {
+            return -1;
+        }
+        return NtpCodec.readTimeStamp(buffer, NtpCodec.ORIGINATE_TIME_OFFSET)
+                + NtpCodec.readTimeStamp(buffer, NtpCodec.RECEIVE_TIME_OFFSET)
+                + NtpCodec.readTimeStamp(buffer, NtpCodec.TRANSMIT_TIME_OFFSET);
+    }
+}